@@ -0,0 +1,169 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import org.eclipse.nebula.paperclips.core.PaperClips;
+import org.eclipse.nebula.paperclips.core.Print;
+import org.eclipse.nebula.paperclips.core.PrintIterator;
+import org.eclipse.nebula.paperclips.core.PrintPiece;
+import org.eclipse.nebula.paperclips.core.grid.GridPrint;
+import org.eclipse.nebula.paperclips.core.text.TextPrint;
+import org.eclipse.swt.SWT;
+
+/**
+ * Utility class to create the synthetic print trees used by the benchmarks.
+ *
+ * @author Patrik Dufresne
+ *
+ */
+public class BenchmarkPrints {
+
+    /**
+     * Decorator name for {@link GapPrint}.
+     */
+    public static final String GAP = "gap"; //$NON-NLS-1$
+
+    /**
+     * Decorator name for {@link MaxSizePrint}.
+     */
+    public static final String MAX_SIZE = "maxSize"; //$NON-NLS-1$
+
+    /**
+     * Decorator name for {@link MinSizePrint}.
+     */
+    public static final String MIN_SIZE = "minSize"; //$NON-NLS-1$
+
+    /**
+     * Decorator name for {@link OffsetPrint}.
+     */
+    public static final String OFFSET = "offset"; //$NON-NLS-1$
+
+    /**
+     * Decorator name for {@link PaddingPrint}.
+     */
+    public static final String PADDING = "padding"; //$NON-NLS-1$
+
+    /**
+     * Wrap the target with the given decorator.
+     *
+     * @param decorator
+     *            the decorator name or null
+     * @param target
+     *            the print to decorate
+     * @return the decorated print
+     */
+    public static Print decorate(String decorator, Print target) {
+        if (decorator == null) {
+            return target;
+        } else if (OFFSET.equals(decorator)) {
+            return new OffsetPrint(target, SWT.LEFT, SWT.TOP, 2, 2);
+        } else if (MAX_SIZE.equals(decorator)) {
+            return new MaxSizePrint(target, 7200, SWT.DEFAULT);
+        } else if (PADDING.equals(decorator)) {
+            return new PaddingPrint(target, 2, 2);
+        } else if (MIN_SIZE.equals(decorator)) {
+            return new MinSizePrint(target, 18, 18);
+        } else if (GAP.equals(decorator)) {
+            return new GapPrint(target, 2);
+        }
+        throw new IllegalArgumentException(decorator);
+    }
+
+    /**
+     * Create a table nested in <code>depth</code> decorators.
+     *
+     * @param decorator
+     *            the decorator name
+     * @param depth
+     *            the number of nested decorators
+     * @param rows
+     *            the number of rows
+     * @return the print
+     */
+    public static Print createDeepPrint(String decorator, int depth, int rows) {
+        Print print = createTable(null, rows, 4);
+        for (int i = 0; i < depth; i++) {
+            print = decorate(decorator, print);
+        }
+        return print;
+    }
+
+    /**
+     * Create a table with each cell wrapped by a decorator.
+     *
+     * @param decorator
+     *            the decorator name or null
+     * @param rows
+     *            the number of rows
+     * @param columns
+     *            the number of columns
+     * @return the table
+     */
+    public static Print createTable(String decorator, int rows, int columns) {
+        StringBuilder spec = new StringBuilder();
+        for (int c = 0; c < columns; c++) {
+            spec.append(c == 0 ? "d:g" : ", d:g"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        GridPrint grid = new GridPrint(spec.toString());
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                grid.add(decorate(decorator, new TextPrint("Row " + r + " column " + c))); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Create a table with many decorated cells.
+     *
+     * @param decorator
+     *            the decorator name
+     * @param rows
+     *            the number of rows
+     * @return the print
+     */
+    public static Print createWidePrint(String decorator, int rows) {
+        return createTable(decorator, rows, 8);
+    }
+
+    /**
+     * Layout all the pages of the given iterator. The pages are disposed.
+     *
+     * @param iterator
+     *            the iterator
+     * @param width
+     *            the page width
+     * @param height
+     *            the page height
+     * @return the number of pages
+     */
+    public static int paginate(PrintIterator iterator, int width, int height) {
+        int count = 0;
+        while (iterator.hasNext()) {
+            PrintPiece page = PaperClips.next(iterator, width, height);
+            if (page == null) {
+                break;
+            }
+            page.dispose();
+            count++;
+        }
+        return count;
+    }
+
+    private BenchmarkPrints() {
+        // Utility class
+    }
+}
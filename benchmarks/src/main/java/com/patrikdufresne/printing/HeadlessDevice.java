@@ -0,0 +1,84 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.widgets.Display;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmark state providing a graphic context backed by an image. No printer is required, the benchmarks may run on a
+ * headless server using Xvfb.
+ *
+ * @author Patrik Dufresne
+ *
+ */
+@State(Scope.Thread)
+public class HeadlessDevice {
+
+    /**
+     * The display.
+     */
+    Display display;
+
+    /**
+     * The graphic context.
+     */
+    GC gc;
+
+    /**
+     * The image backing the graphic context.
+     */
+    Image image;
+
+    /**
+     * The page height in pixels (11" at the display resolution).
+     */
+    int pageHeight;
+
+    /**
+     * The page width in pixels (8.5" at the display resolution).
+     */
+    int pageWidth;
+
+    /**
+     * Create the graphic context.
+     */
+    @Setup
+    public void setup() {
+        this.display = Display.getDefault();
+        this.image = new Image(this.display, 16, 16);
+        this.gc = new GC(this.image);
+        Point dpi = this.display.getDPI();
+        this.pageWidth = dpi.x * 17 / 2;
+        this.pageHeight = dpi.y * 11;
+    }
+
+    /**
+     * Dispose the graphic context.
+     */
+    @TearDown
+    public void tearDown() {
+        this.gc.dispose();
+        this.image.dispose();
+    }
+
+}
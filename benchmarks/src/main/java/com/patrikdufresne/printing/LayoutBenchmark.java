@@ -0,0 +1,158 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.nebula.paperclips.core.Print;
+import org.eclipse.nebula.paperclips.core.PrintIterator;
+import org.eclipse.swt.graphics.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measure the layout throughput of the decorators ({@link OffsetPrint}, {@link MaxSizePrint}, {@link PaddingPrint},
+ * {@link MinSizePrint} and {@link GapPrint}) over deep and wide synthetic print trees.
+ * <p>
+ * A deep tree is a table nested in many decorators. A wide tree is a table with each cell wrapped in a decorator.
+ *
+ * @author Patrik Dufresne
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LayoutBenchmark {
+
+    /**
+     * The decorator to measure.
+     */
+    @Param({ BenchmarkPrints.OFFSET, BenchmarkPrints.MAX_SIZE, BenchmarkPrints.PADDING, BenchmarkPrints.MIN_SIZE, BenchmarkPrints.GAP })
+    public String decorator;
+
+    /**
+     * Number of nested decorators of the deep tree.
+     */
+    @Param({ "8" })
+    public int depth;
+
+    /**
+     * Number of table rows.
+     */
+    @Param({ "200" })
+    public int rows;
+
+    /**
+     * The tree shape: deep or wide.
+     */
+    @Param({ "deep", "wide" })
+    public String shape;
+
+    /**
+     * Iterator used by the size and copy benchmarks.
+     */
+    private PrintIterator iterator;
+
+    /**
+     * The print tree.
+     */
+    private Print print;
+
+    /**
+     * Create the print tree.
+     *
+     * @param device
+     *            the headless device
+     */
+    @Setup
+    public void setup(HeadlessDevice device) {
+        if ("deep".equals(this.shape)) { //$NON-NLS-1$
+            this.print = BenchmarkPrints.createDeepPrint(this.decorator, this.depth, this.rows);
+        } else {
+            this.print = BenchmarkPrints.createWidePrint(this.decorator, this.rows);
+        }
+        this.iterator = this.print.iterator(device.display, device.gc);
+    }
+
+    /**
+     * Measure the copy of an iterator.
+     *
+     * @return the copy
+     */
+    @Benchmark
+    public PrintIterator copy() {
+        return this.iterator.copy();
+    }
+
+    /**
+     * Measure the minimum size of a fresh iterator.
+     *
+     * @param device
+     *            the headless device
+     * @return the size
+     */
+    @Benchmark
+    public Point minimumSize(HeadlessDevice device) {
+        return this.print.iterator(device.display, device.gc).minimumSize();
+    }
+
+    /**
+     * Measure the pagination of the whole tree.
+     *
+     * @param device
+     *            the headless device
+     * @return the number of pages
+     */
+    @Benchmark
+    public int next(HeadlessDevice device) {
+        PrintIterator iter = this.print.iterator(device.display, device.gc);
+        return BenchmarkPrints.paginate(iter, device.pageWidth, device.pageHeight);
+    }
+
+    /**
+     * Measure the preferred size of a fresh iterator.
+     *
+     * @param device
+     *            the headless device
+     * @return the size
+     */
+    @Benchmark
+    public Point preferredSize(HeadlessDevice device) {
+        return this.print.iterator(device.display, device.gc).preferredSize();
+    }
+
+    /**
+     * Measure repeated size queries on the same iterator, as done by containers like GridPrint.
+     *
+     * @return the size
+     */
+    @Benchmark
+    public Point repeatedSizes() {
+        Point size = null;
+        for (int i = 0; i < 10; i++) {
+            this.iterator.minimumSize();
+            size = this.iterator.preferredSize();
+        }
+        return size;
+    }
+
+}
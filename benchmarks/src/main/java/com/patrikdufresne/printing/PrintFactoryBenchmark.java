@@ -0,0 +1,112 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.nebula.paperclips.core.Print;
+import org.eclipse.nebula.paperclips.core.page.PageNumber;
+import org.eclipse.nebula.paperclips.core.text.TextPrint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measure the creation and the pagination of a document created by {@link MultipleHeaderSingleFooterPrintFactory}.
+ *
+ * @author Patrik Dufresne
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PrintFactoryBenchmark {
+
+    /**
+     * Number of rows per section.
+     */
+    @Param({ "100" })
+    public int rows;
+
+    /**
+     * Number of sections.
+     */
+    @Param({ "10" })
+    public int sections;
+
+    /**
+     * The factory to measure.
+     */
+    private IPrintFactory factory;
+
+    /**
+     * Create the factory.
+     */
+    @Setup
+    public void setup() {
+        this.factory = new MultipleHeaderSingleFooterPrintFactory("Benchmark") { //$NON-NLS-1$
+            @Override
+            protected Print createFooterArea(PageNumber pageNumber) {
+                return new TextPrint("Page " + pageNumber.getPageNumber() + " of " + pageNumber.getPageCount()); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+
+            @Override
+            protected void createSections() {
+                for (int i = 0; i < sections; i++) {
+                    final int section = i;
+                    addSection(new HeaderSection() {
+                        public Print createBodyArea() {
+                            return BenchmarkPrints.createTable(BenchmarkPrints.PADDING, rows, 4);
+                        }
+
+                        public Print createHeaderArea(PageNumber pageNumber) {
+                            return new TextPrint("Section " + section); //$NON-NLS-1$
+                        }
+                    });
+                }
+            }
+        };
+    }
+
+    /**
+     * Measure the creation of the print.
+     *
+     * @return the print
+     */
+    @Benchmark
+    public Print createPrint() {
+        return this.factory.createPrint();
+    }
+
+    /**
+     * Measure the creation and the pagination of the print.
+     *
+     * @param device
+     *            the headless device
+     * @return the number of pages
+     */
+    @Benchmark
+    public int createPrintAndPaginate(HeadlessDevice device) {
+        Print print = this.factory.createPrint();
+        return BenchmarkPrints.paginate(print.iterator(device.display, device.gc), device.pageWidth, device.pageHeight);
+    }
+
+}
@@ -25,12 +25,55 @@ import org.eclipse.nebula.paperclips.core.grid.GridCell;
 import org.eclipse.nebula.paperclips.core.grid.GridPrint;
 import org.eclipse.nebula.paperclips.core.Print;
 
+/**
+ * Provide the background color of the body cells of a grid. The color may be set per cell, per column or as row
+ * stripes. The cell color has precedence over the column color which has precedence over the row stripes.
+ * <p>
+ * The cell colors are indexed by row and column once, the first time a background is requested after a change, since
+ * {@link GridPrint#getBodyCells()} copy the whole grid. Call {@link #invalidate()} if the grid body is modified after
+ * being laid out.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
 public class BackgroundProvider implements CellBackgroundProvider {
 
-    private Map<Print, RGB> table;
+    /**
+     * The cell colors indexed by row and starting column. A row without color is null.
+     */
+    private volatile RGB[][] cellBackgrounds;
 
+    /**
+     * True if a color is set for at least one cell.
+     */
+    private volatile boolean cellColors;
+
+    /**
+     * The colors by column or null.
+     */
+    private volatile RGB[] columnBackgrounds;
+
+    /**
+     * The grid.
+     */
     private GridPrint grid;
 
+    /**
+     * The colors repeated for each row or null.
+     */
+    private volatile RGB[] rowStripes;
+
+    /**
+     * The cell colors by content.
+     */
+    private Map<Print, RGB> table;
+
+    /**
+     * Create a new background provider for the body of the given grid.
+     * 
+     * @param grid
+     *            the grid
+     */
     public BackgroundProvider(GridPrint grid) {
         if (grid == null) {
             throw new NullPointerException();
@@ -38,19 +81,71 @@ public class BackgroundProvider implements CellBackgroundProvider {
         this.grid = grid;
     }
 
-    @Override
-    public RGB getCellBackground(int row, int column, int colspan) {
+    /**
+     * Return the color associated with the cell specified.
+     * 
+     * @param cell
+     *            the cell
+     * @return the color or null is not set.
+     */
+    public synchronized RGB getBackground(Print cell) {
         if (this.table == null) {
             return null;
         }
-        GridCell[][] cells = this.grid.getBodyCells();
-        if (cells.length < row || cells[row].length < column) {
-            return null;
+        return this.table.get(cell);
+    }
+
+    @Override
+    public RGB getCellBackground(int row, int column, int colspan) {
+        RGB rgb = null;
+        if (this.cellColors) {
+            RGB[][] cells = this.cellBackgrounds;
+            if (cells == null || row >= cells.length) {
+                cells = snapshot(row);
+            }
+            if (cells != null && row < cells.length && cells[row] != null && column < cells[row].length) {
+                rgb = cells[row][column];
+            }
+        }
+        RGB[] columns = this.columnBackgrounds;
+        if (rgb == null && columns != null && column < columns.length) {
+            rgb = columns[column];
+        }
+        RGB[] stripes = this.rowStripes;
+        if (rgb == null && stripes != null) {
+            rgb = stripes[row % stripes.length];
         }
+        return rgb;
+    }
 
-        // Lookup the table.
-        return this.table.get(cells[row][column].getContent());
+    /**
+     * Returns the color of the given column.
+     * 
+     * @param column
+     *            the column index
+     * @return the color or null if not set
+     */
+    public RGB getColumnBackground(int column) {
+        RGB[] columns = this.columnBackgrounds;
+        return columns != null && column < columns.length ? columns[column] : null;
+    }
 
+    /**
+     * Returns the colors repeated for each row.
+     * 
+     * @return the colors or null if not set
+     */
+    public RGB[] getRowStripes() {
+        RGB[] stripes = this.rowStripes;
+        return stripes != null ? stripes.clone() : null;
+    }
+
+    /**
+     * Discard the cell colors indexed by row and column. Must be called when the grid body is modified after being laid
+     * out.
+     */
+    public synchronized void invalidate() {
+        this.cellBackgrounds = null;
     }
 
     /**
@@ -61,7 +156,7 @@ public class BackgroundProvider implements CellBackgroundProvider {
      * @param color
      *            the color or null to unset.
      */
-    public void setBackground(Print cell, RGB color) {
+    public synchronized void setBackground(Print cell, RGB color) {
         if (this.table == null) {
             this.table = new HashMap<Print, RGB>();
         }
@@ -70,20 +165,87 @@ public class BackgroundProvider implements CellBackgroundProvider {
         } else {
             this.table.remove(cell);
         }
+        this.cellColors = !this.table.isEmpty();
+        this.cellBackgrounds = null;
     }
 
     /**
-     * Return the color associated with the cell specified.
+     * Sets the color of a column. Applies to the cells starting in that column.
      * 
-     * @param cell
-     *            the cell
-     * @return the color or null is not set.
+     * @param column
+     *            the column index
+     * @param color
+     *            the color or null to unset
      */
-    public RGB getBackground(Print cell) {
-        if (this.table == null) {
+    public synchronized void setColumnBackground(int column, RGB color) {
+        if (column < 0) {
+            throw new IllegalArgumentException();
+        }
+        RGB[] columns = this.columnBackgrounds;
+        if (columns == null || column >= columns.length) {
+            if (color == null) {
+                return;
+            }
+            RGB[] copy = new RGB[column + 1];
+            if (columns != null) {
+                System.arraycopy(columns, 0, copy, 0, columns.length);
+            }
+            columns = copy;
+        } else {
+            columns = columns.clone();
+        }
+        columns[column] = color;
+        this.columnBackgrounds = columns;
+    }
+
+    /**
+     * Sets the colors repeated for each row, e.g.: white and light gray for zebra stripes. A null color leave the row
+     * without background.
+     * 
+     * @param colors
+     *            the colors or null to unset
+     */
+    public synchronized void setRowStripes(RGB... colors) {
+        this.rowStripes = colors != null && colors.length > 0 ? colors.clone() : null;
+    }
+
+    /**
+     * Index the cell colors by row and starting column. The grid body cells are copied once.
+     * 
+     * @param row
+     *            the row requested
+     * @return the cell colors or null if no cell color is set
+     */
+    private synchronized RGB[][] snapshot(int row) {
+        RGB[][] snapshot = this.cellBackgrounds;
+        if (snapshot != null && row < snapshot.length) {
+            // Built by another thread.
+            return snapshot;
+        }
+        if (this.table == null || this.table.isEmpty()) {
             return null;
         }
-        return this.table.get(cell);
+        GridCell[][] cells = this.grid.getBodyCells();
+        snapshot = new RGB[cells.length][];
+        for (int r = 0; r < cells.length; r++) {
+            int width = 0;
+            for (GridCell cell : cells[r]) {
+                width += Math.max(1, cell.getColSpan());
+            }
+            int column = 0;
+            for (GridCell cell : cells[r]) {
+                RGB rgb = this.table.get(cell.getContent());
+                if (rgb != null) {
+                    if (snapshot[r] == null) {
+                        snapshot[r] = new RGB[width];
+                    }
+                    snapshot[r][column] = rgb;
+                }
+                column += Math.max(1, cell.getColSpan());
+            }
+        }
+        this.cellBackgrounds = snapshot;
+        return snapshot;
     }
 
 }
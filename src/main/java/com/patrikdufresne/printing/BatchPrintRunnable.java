@@ -0,0 +1,320 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.nebula.paperclips.core.PaperClips;
+import org.eclipse.nebula.paperclips.core.PrintJob;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.jface.operation.IRunnableWithProgress;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.printing.Printer;
+import org.eclipse.swt.widgets.Display;
+
+import com.patrikdufresne.util.Localized;
+
+/**
+ * Runnable to print many documents in a row. The print jobs are created concurrently by a pool of threads (
+ * {@link #initFactory(IPrintFactory)} and {@link IPrintFactory#createPrint()}) and are sent to the printer in the
+ * order of the factories as soon as they are ready. At most two print jobs per thread are created ahead of the one
+ * being printed to bound the memory used by large batches. The print jobs are sent to the printer by the main thread
+ * using {@link Display#syncExec(Runnable)}.
+ * <p>
+ * The printer is not disposed by this runnable. The printer and this runnable should be created by the main thread and
+ * the printer resources released with the printer:
+ * 
+ * <pre>
+ * Printer printer = new Printer(data);
+ * try {
+ *     context.run(true, true, new BatchPrintRunnable(printer, factories));
+ * } finally {
+ *     DeviceResourcePool.dispose(printer);
+ *     printer.dispose();
+ * }
+ * </pre>
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class BatchPrintRunnable implements IRunnableWithProgress {
+
+    /**
+     * Delay between two checks of the monitor cancellation while waiting for a print job, in milliseconds.
+     */
+    private static final long POLL_DELAY = 100;
+
+    /**
+     * The display used to print by the main thread.
+     */
+    private Display display;
+
+    /**
+     * The factories to print.
+     */
+    private List<IPrintFactory> factories;
+
+    /**
+     * The printer.
+     */
+    private Printer printer;
+
+    /**
+     * True to send the pages to the printer as they are laid out.
+     */
+    private boolean streamingPrint;
+
+    /**
+     * Number of threads used to create the print jobs.
+     */
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Create a new runnable. Must be called by the main thread.
+     * 
+     * @param printer
+     *            the printer
+     * @param factories
+     *            the factories to print, in printing order
+     */
+    public BatchPrintRunnable(Printer printer, List<? extends IPrintFactory> factories) {
+        if (printer == null || factories == null) {
+            throw new NullPointerException();
+        }
+        this.display = Display.getCurrent();
+        if (this.display == null) {
+            SWT.error(SWT.ERROR_THREAD_INVALID_ACCESS);
+        }
+        this.printer = printer;
+        this.factories = new ArrayList<IPrintFactory>(factories);
+    }
+
+    /**
+     * Create the print job of the given factory. This function is called by a thread of the pool.
+     * 
+     * @param factory
+     *            the factory
+     * @return the print job
+     * @throws InvocationTargetException
+     *             if the factory failed
+     * @throws InterruptedException
+     *             if the operation is cancelled
+     */
+    protected PrintJob createPrintJob(IPrintFactory factory) throws InvocationTargetException, InterruptedException {
+        // Query database
+        initFactory(factory);
+        // Create print
+        PrintJob job = new PrintJob(factory.getName(), factory.createPrint());
+        job.setMargins(factory.getMargins());
+        job.setOrientation(factory.getOrientation());
+        return job;
+    }
+
+    /**
+     * Returns the factories to print.
+     * 
+     * @return the factories
+     */
+    public List<IPrintFactory> getFactories() {
+        return this.factories;
+    }
+
+    /**
+     * Returns the printer.
+     * 
+     * @return the printer
+     */
+    public Printer getPrinter() {
+        return this.printer;
+    }
+
+    /**
+     * Returns the number of threads used to create the print jobs.
+     * 
+     * @return the number of threads
+     */
+    public int getThreadCount() {
+        return this.threadCount;
+    }
+
+    /**
+     * This function is used to setup the factory object before it get to create a Print object. Sub-class may
+     * implement this function to sets factory data.
+     * <p>
+     * This function is not called by the main Thread and may be called concurrently for different factories.
+     * 
+     * @param factory
+     *            the factory
+     * @exception InvocationTargetException
+     *                if the method must propagate an exception, it should wrap it inside an
+     *                <code>InvocationTargetException</code>
+     * @exception InterruptedException
+     *                if the operation is cancel by the user, this method should exit by throwing
+     *                <code>InterruptedException</code>
+     */
+    protected void initFactory(IPrintFactory factory) throws InvocationTargetException, InterruptedException {
+        // Implemented by sub-class
+    }
+
+    /**
+     * Check if the pages are sent to the printer as they are laid out.
+     * 
+     * @return True if streaming is enabled
+     */
+    public boolean isStreamingPrint() {
+        return this.streamingPrint;
+    }
+
+    /**
+     * Send the print job to the printer. This function is called by the main thread.
+     * 
+     * @param job
+     *            the print job
+     * @param monitor
+     *            the progress monitor
+     * @throws InterruptedException
+     *             if the operation is cancelled
+     */
+    protected void print(PrintJob job, IProgressMonitor monitor) throws InterruptedException {
+        if (this.streamingPrint) {
+            new StreamingPrinter(job).print(this.printer, monitor);
+        } else {
+            PaperClips.print(job, this.printer);
+        }
+    }
+
+    @Override
+    public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
+        // Each factory count for two units: one to create the job and one to print it.
+        monitor.beginTask(Localized.format(BatchPrintRunnable.class, "BatchPrintRunnable.task.preparePrinting", //$NON-NLS-1$
+                Integer.valueOf(this.factories.size())), 2 * this.factories.size());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, this.threadCount), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "BatchPrintRunnable"); //$NON-NLS-1$
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            // Create the print jobs concurrently, a limited number ahead of the printed one.
+            int ahead = 2 * Math.max(1, this.threadCount);
+            List<Future<PrintJob>> futures = new ArrayList<Future<PrintJob>>(ahead);
+            int submitted = 0;
+            for (int i = 0; i < this.factories.size(); i++) {
+                while (submitted < this.factories.size() && submitted < i + ahead) {
+                    final IPrintFactory factory = this.factories.get(submitted++);
+                    futures.add(executor.submit(new Callable<PrintJob>() {
+                        public PrintJob call() throws Exception {
+                            return createPrintJob(factory);
+                        }
+                    }));
+                }
+                // Print them in order.
+                final PrintJob job = waitFor(futures.remove(0), monitor);
+                monitor.worked(1);
+                monitor.subTask(Localized.format(BatchPrintRunnable.class, "BatchPrintRunnable.task.print", job.getName())); //$NON-NLS-1$
+                final IProgressMonitor sub = new SubProgressMonitor(monitor, 1);
+                final InterruptedException[] interrupted = new InterruptedException[1];
+                try {
+                    // Native printing must be done by the main thread.
+                    this.display.syncExec(new Runnable() {
+                        public void run() {
+                            try {
+                                print(job, sub);
+                            } catch (InterruptedException e) {
+                                interrupted[0] = e;
+                            }
+                        }
+                    });
+                } finally {
+                    sub.done();
+                }
+                if (interrupted[0] != null) {
+                    throw interrupted[0];
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            monitor.done();
+        }
+    }
+
+    /**
+     * Sets whether the pages should be sent to the printer as they are laid out using a {@link StreamingPrinter}.
+     * 
+     * @param streamingPrint
+     *            True to enable streaming
+     */
+    public void setStreamingPrint(boolean streamingPrint) {
+        this.streamingPrint = streamingPrint;
+    }
+
+    /**
+     * Sets the number of threads used to create the print jobs. Default is the number of processors.
+     * 
+     * @param threadCount
+     *            the number of threads
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Wait for the print job to be created.
+     * 
+     * @param future
+     *            the future print job
+     * @param monitor
+     *            the progress monitor checked for cancellation
+     * @return the print job
+     * @throws InvocationTargetException
+     *             if the creation failed
+     * @throws InterruptedException
+     *             if the operation is cancelled
+     */
+    private PrintJob waitFor(Future<PrintJob> future, IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
+        while (true) {
+            if (monitor.isCanceled()) {
+                throw new InterruptedException();
+            }
+            try {
+                return future.get(POLL_DELAY, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Check cancellation again.
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof InterruptedException) {
+                    throw (InterruptedException) e.getCause();
+                } else if (e.getCause() instanceof InvocationTargetException) {
+                    throw (InvocationTargetException) e.getCause();
+                }
+                throw new InvocationTargetException(e.getCause());
+            }
+        }
+    }
+
+}
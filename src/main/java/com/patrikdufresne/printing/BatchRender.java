@@ -0,0 +1,324 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import org.eclipse.nebula.paperclips.core.PrintJob;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.printing.Printer;
+import org.eclipse.swt.printing.PrinterData;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Command line tool rendering print factories into files. Used to profile and to regression-test the reports, e.g.: on
+ * a server running Xvfb.
+ * 
+ * <pre>
+ * java com.patrikdufresne.printing.BatchRender [options] [factory class names]
+ * </pre>
+ * 
+ * The factories are instantiated by class name using their default constructor. When no class name is given, the
+ * factories are loaded using a {@link ServiceLoader} of {@link IPrintFactory}. The time spent in each phase is printed
+ * for every factory: instantiation, {@link IPrintFactory#createPrint()}, pagination and rendering.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class BatchRender {
+
+    /**
+     * Exit code on invalid arguments.
+     */
+    private static final int EXIT_USAGE = 2;
+
+    /**
+     * Exit code on error.
+     */
+    private static final int EXIT_ERROR = 1;
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        BatchRender render = new BatchRender();
+        try {
+            render.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(EXIT_USAGE);
+        }
+        Display display = new Display();
+        boolean failed = false;
+        try {
+            render.run();
+        } catch (Exception e) {
+            e.printStackTrace();
+            failed = true;
+        } finally {
+            display.dispose();
+        }
+        if (failed) {
+            System.exit(EXIT_ERROR);
+        }
+    }
+
+    /**
+     * Convert nanoseconds to milliseconds.
+     * 
+     * @param nanos
+     *            the time in nanoseconds
+     * @return the time in milliseconds
+     */
+    private static long millis(long nanos) {
+        return nanos / 1000000;
+    }
+
+    /**
+     * Print the command line usage.
+     */
+    private static void printUsage() {
+        System.err.println("Usage: BatchRender [options] [factory class names]"); //$NON-NLS-1$
+        System.err.println("Options:"); //$NON-NLS-1$
+        System.err.println("  -format <png|jpg|bmp|pdf>  output format (default: png)"); //$NON-NLS-1$
+        System.err.println("  -dpi <n>                   image resolution, not supported by pdf (default: " + PageImageExporter.DEFAULT_DPI + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+        System.err.println("  -pages <start>-<end>       page range (default: all)"); //$NON-NLS-1$
+        System.err.println("  -threads <n>               number of threads used to encode the images, ignored by pdf"); //$NON-NLS-1$
+        System.err.println("  -output <directory>        output directory (default: current directory)"); //$NON-NLS-1$
+        System.err.println("  -repeat <n>                number of times to render the factories (default: 1)"); //$NON-NLS-1$
+        System.err.println("Without class name, the factories are loaded with a ServiceLoader."); //$NON-NLS-1$
+        System.err.println("The files are named after the fully qualified class name of the factories."); //$NON-NLS-1$
+    }
+
+    /**
+     * The factory class names.
+     */
+    private List<String> classNames = new ArrayList<String>();
+
+    /**
+     * The image resolution.
+     */
+    private int dpi = PageImageExporter.DEFAULT_DPI;
+
+    /**
+     * True if the resolution was given on the command line.
+     */
+    private boolean dpiSet;
+
+    /**
+     * The last page to render.
+     */
+    private int endPage = Integer.MAX_VALUE;
+
+    /**
+     * The output format: png, jpg, bmp or pdf.
+     */
+    private String format = "png"; //$NON-NLS-1$
+
+    /**
+     * The output directory.
+     */
+    private File output = new File("."); //$NON-NLS-1$
+
+    /**
+     * Number of times to render the factories.
+     */
+    private int repeat = 1;
+
+    /**
+     * The first page to render.
+     */
+    private int startPage = 1;
+
+    /**
+     * Number of threads used to encode the images.
+     */
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Parse an integer argument.
+     * 
+     * @param args
+     *            the arguments
+     * @param i
+     *            the index of the value
+     * @return the value
+     */
+    private int intArg(String[] args, int i) {
+        try {
+            return Integer.parseInt(stringArg(args, i));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + args[i]); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Parse the command line arguments.
+     * 
+     * @param args
+     *            the arguments
+     * @throws IllegalArgumentException
+     *             if the arguments are not valid
+     */
+    void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("-format".equals(arg)) { //$NON-NLS-1$
+                this.format = stringArg(args, ++i);
+                if (!"png".equals(this.format) && !"jpg".equals(this.format) && !"bmp".equals(this.format) && !"pdf".equals(this.format)) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+                    throw new IllegalArgumentException("Unknown format: " + this.format); //$NON-NLS-1$
+                }
+            } else if ("-dpi".equals(arg)) { //$NON-NLS-1$
+                this.dpi = intArg(args, ++i);
+                this.dpiSet = true;
+            } else if ("-pages".equals(arg)) { //$NON-NLS-1$
+                String range = stringArg(args, ++i);
+                int sep = range.indexOf('-');
+                try {
+                    this.startPage = Integer.parseInt(sep < 0 ? range : range.substring(0, sep));
+                    this.endPage = sep < 0 ? this.startPage : Integer.parseInt(range.substring(sep + 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid page range: " + range); //$NON-NLS-1$
+                }
+            } else if ("-threads".equals(arg)) { //$NON-NLS-1$
+                this.threadCount = intArg(args, ++i);
+            } else if ("-output".equals(arg)) { //$NON-NLS-1$
+                this.output = new File(stringArg(args, ++i));
+            } else if ("-repeat".equals(arg)) { //$NON-NLS-1$
+                this.repeat = intArg(args, ++i);
+            } else if (arg.startsWith("-")) { //$NON-NLS-1$
+                throw new IllegalArgumentException("Unknown option: " + arg); //$NON-NLS-1$
+            } else {
+                this.classNames.add(arg);
+            }
+        }
+        if (this.startPage < 1 || this.endPage < this.startPage) {
+            throw new IllegalArgumentException("Invalid page range"); //$NON-NLS-1$
+        }
+        if (this.dpiSet && "pdf".equals(this.format)) { //$NON-NLS-1$
+            // The resolution is the one of the print to file backend.
+            throw new IllegalArgumentException("-dpi is not supported with -format pdf"); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Render the factory into files.
+     * 
+     * @param factory
+     *            the factory
+     * @param initTime
+     *            the time spent to create the factory
+     * @throws IOException
+     */
+    private void render(IPrintFactory factory, long initTime) throws IOException {
+        // The simple name may be empty or shared by factories of different packages.
+        String name = factory.getClass().getName();
+
+        long start = System.nanoTime();
+        PrintJob job = PrintFactory.createPrintJob(factory);
+        long createTime = System.nanoTime() - start;
+
+        if ("pdf".equals(this.format)) { //$NON-NLS-1$
+            // The pages are laid out and written one at a time.
+            PrinterData data = StreamingPrinter.getFilePrinterData(new File(this.output, name + ".pdf").getAbsolutePath()); //$NON-NLS-1$
+            if (this.startPage > 1 || this.endPage < Integer.MAX_VALUE) {
+                data.scope = PrinterData.PAGE_RANGE;
+                data.startPage = this.startPage;
+                data.endPage = this.endPage;
+            }
+            StreamingPrinter printer = new StreamingPrinter(job);
+            Printer device = new Printer(data);
+            try {
+                printer.print(device);
+            } finally {
+                DeviceResourcePool.dispose(device);
+                device.dispose();
+            }
+            System.out.println(String.format("%s: init %d ms, createPrint %d ms, pagination+rendering %d ms, %d pages (%.1f pages/s)", //$NON-NLS-1$
+                    name, Long.valueOf(millis(initTime)), Long.valueOf(millis(createTime)), Long.valueOf(millis(printer.getElapsedTime())),
+                    Integer.valueOf(printer.getPageCount()), Float.valueOf(printer.getPagesPerSecond())));
+        } else {
+            PageImageExporter exporter = new PageImageExporter(job);
+            exporter.setDPI(this.dpi);
+            exporter.setFormat("jpg".equals(this.format) ? SWT.IMAGE_JPEG : "bmp".equals(this.format) ? SWT.IMAGE_BMP : SWT.IMAGE_PNG); //$NON-NLS-1$ //$NON-NLS-2$
+            exporter.setPageRange(this.startPage, this.endPage);
+            exporter.setThreadCount(this.threadCount);
+            File[] files = exporter.export(this.output, name);
+            System.out.println(String.format("%s: init %d ms, createPrint %d ms, pagination %d ms, rendering %d ms, %d pages, %d files", //$NON-NLS-1$
+                    name, Long.valueOf(millis(initTime)), Long.valueOf(millis(createTime)), Long.valueOf(millis(exporter.getLayoutTime())),
+                    Long.valueOf(millis(exporter.getRenderTime())), Integer.valueOf(exporter.getPageCount()), Integer.valueOf(files.length)));
+        }
+    }
+
+    /**
+     * Render all the factories.
+     * 
+     * @throws Exception
+     *             if a factory can't be created or rendered
+     */
+    void run() throws Exception {
+        if (!this.output.isDirectory() && !this.output.mkdirs()) {
+            throw new IOException("Can't create directory " + this.output); //$NON-NLS-1$
+        }
+        for (int r = 0; r < this.repeat; r++) {
+            if (this.classNames.isEmpty()) {
+                Iterator<IPrintFactory> iter = ServiceLoader.load(IPrintFactory.class).iterator();
+                while (true) {
+                    // The service loader instantiate the factory while iterating.
+                    long start = System.nanoTime();
+                    if (!iter.hasNext()) {
+                        break;
+                    }
+                    IPrintFactory factory = iter.next();
+                    render(factory, System.nanoTime() - start);
+                }
+            } else {
+                for (String className : this.classNames) {
+                    long start = System.nanoTime();
+                    IPrintFactory factory = (IPrintFactory) Class.forName(className).newInstance();
+                    render(factory, System.nanoTime() - start);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the value of an option.
+     * 
+     * @param args
+     *            the arguments
+     * @param i
+     *            the index of the value
+     * @return the value
+     */
+    private String stringArg(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]); //$NON-NLS-1$
+        }
+        return args[i];
+    }
+
+}
@@ -0,0 +1,422 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.nebula.paperclips.core.Print;
+import org.eclipse.nebula.paperclips.core.PrintIterator;
+import org.eclipse.nebula.paperclips.core.text.TextPrint;
+
+import org.eclipse.swt.graphics.Device;
+import org.eclipse.swt.graphics.FontData;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Point;
+
+/**
+ * Estimate the column widths of a table from a sample of its rows instead of measuring every cell. The sample is made
+ * of the first rows and of a random reservoir of the remaining rows. The width of a column is a percentile of the
+ * preferred widths of the sampled cells, so only the few cells wider than that are wrapped, but never less than the
+ * widest minimum width.
+ * <p>
+ * The rows are read twice: once to pick the sample, then again to lay out the table. The text of a {@link TextPrint}
+ * is measured directly using a {@link TextExtentCache}, so each string is measured once per font. The other cells are
+ * measured using their iterator.
+ * 
+ * @author Patrik Dufresne
+ * 
+ * @param <T>
+ *            the row type
+ */
+public class ColumnWidthSampler<T> {
+
+    /**
+     * Default number of first rows sampled.
+     */
+    public static final int DEFAULT_HEAD_SIZE = 50;
+
+    /**
+     * Default percentile of the preferred widths.
+     */
+    public static final int DEFAULT_PERCENTILE = 95;
+
+    /**
+     * Default number of random rows sampled.
+     */
+    public static final int DEFAULT_RESERVOIR_SIZE = 50;
+
+    /**
+     * Seed of the random sample. A constant seed give the same widths every time.
+     */
+    private static final long SEED = 0x5EED;
+
+    /**
+     * Number of first rows sampled.
+     */
+    private int headSize = DEFAULT_HEAD_SIZE;
+
+    /**
+     * The maximum table width in points or 0.
+     */
+    private int maxWidth;
+
+    /**
+     * Percentile of the preferred widths.
+     */
+    private int percentile = DEFAULT_PERCENTILE;
+
+    /**
+     * The renderer creating the cells.
+     */
+    private final IRowRenderer<T> renderer;
+
+    /**
+     * Number of random rows sampled.
+     */
+    private int reservoirSize = DEFAULT_RESERVOIR_SIZE;
+
+    /**
+     * The cache used to measure the text.
+     */
+    private TextExtentCache textExtentCache = TextExtentCache.getDefault();
+
+    /**
+     * Create a new sampler.
+     * 
+     * @param renderer
+     *            the renderer creating the cells of a row
+     */
+    public ColumnWidthSampler(IRowRenderer<T> renderer) {
+        if (renderer == null) {
+            throw new NullPointerException();
+        }
+        this.renderer = renderer;
+    }
+
+    /**
+     * Compute the column widths.
+     * 
+     * @param source
+     *            the rows
+     * @param header
+     *            the header cells or null
+     * @param columnCount
+     *            the number of columns
+     * @param spacing
+     *            the space between the columns in points
+     * @param device
+     *            the device used to measure the cells
+     * @param gc
+     *            the graphic context of the device
+     * @return the column widths in points
+     */
+    public int[] computeWidths(IRowSource<T> source, Print[] header, int columnCount, int spacing, Device device, GC gc) {
+        // The preferred widths and the widest minimum width of each column, in pixels.
+        List<List<Integer>> preferred = new ArrayList<List<Integer>>();
+        for (int i = 0; i < columnCount; i++) {
+            preferred.add(new ArrayList<Integer>());
+        }
+        int[] minimum = new int[columnCount];
+
+        if (header != null) {
+            measure(header, preferred, minimum, device, gc);
+        }
+        for (T row : sample(source)) {
+            measure(this.renderer.createCells(row), preferred, minimum, device, gc);
+        }
+
+        DeviceScale scale = DeviceScale.get(device);
+        int[] widths = new int[columnCount];
+        int[] mins = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            mins[i] = scale.toPointsX(minimum[i]);
+            widths[i] = Math.max(mins[i], scale.toPointsX(percentile(preferred.get(i), this.percentile)));
+        }
+        if (this.maxWidth > 0) {
+            shrink(widths, mins, spacing, this.maxWidth);
+        }
+        return widths;
+    }
+
+    /**
+     * Returns the number of first rows sampled.
+     * 
+     * @return the number of rows
+     */
+    public int getHeadSize() {
+        return this.headSize;
+    }
+
+    /**
+     * Returns the maximum table width.
+     * 
+     * @return the width in points or 0 if not limited
+     */
+    public int getMaxWidth() {
+        return this.maxWidth;
+    }
+
+    /**
+     * Returns the percentile of the preferred widths used as column width.
+     * 
+     * @return the percentile
+     */
+    public int getPercentile() {
+        return this.percentile;
+    }
+
+    /**
+     * Returns the number of random rows sampled.
+     * 
+     * @return the number of rows
+     */
+    public int getReservoirSize() {
+        return this.reservoirSize;
+    }
+
+    /**
+     * Returns the cache used to measure the text.
+     * 
+     * @return the text extent cache
+     */
+    public TextExtentCache getTextExtentCache() {
+        return this.textExtentCache;
+    }
+
+    /**
+     * Measure the cells of a row.
+     * 
+     * @param cells
+     *            the cells
+     * @param preferred
+     *            the preferred widths per column
+     * @param minimum
+     *            the widest minimum width per column
+     * @param device
+     *            the device
+     * @param gc
+     *            the graphic context
+     */
+    private void measure(Print[] cells, List<List<Integer>> preferred, int[] minimum, Device device, GC gc) {
+        for (int i = 0; i < cells.length && i < minimum.length; i++) {
+            if (cells[i] == null) {
+                continue;
+            }
+            Point size;
+            if (cells[i].getClass() == TextPrint.class) {
+                size = measureText((TextPrint) cells[i], gc);
+            } else {
+                PrintIterator iter = cells[i].iterator(device, gc);
+                size = new Point(iter.preferredSize().x, iter.minimumSize().x);
+            }
+            preferred.get(i).add(Integer.valueOf(size.x));
+            minimum[i] = Math.max(minimum[i], size.y);
+        }
+    }
+
+    /**
+     * Measure a text print: the widest line and the widest word.
+     * 
+     * @param print
+     *            the text print
+     * @param gc
+     *            the graphic context
+     * @return the preferred width as x and the minimum width as y, in pixels
+     */
+    private Point measureText(TextPrint print, GC gc) {
+        String text = print.getText();
+        FontData fontData = print.getFontData();
+        if (text == null || text.length() == 0) {
+            return new Point(0, 0);
+        }
+        if (fontData == null) {
+            // Like TextPrint, use the current font of the graphic context.
+            fontData = gc.getFont().getFontData()[0];
+        }
+        int preferred = 0;
+        int minimum = 0;
+        for (String line : text.split("\n")) { //$NON-NLS-1$
+            preferred = Math.max(preferred, this.textExtentCache.textExtent(gc, fontData, line).x);
+            for (String word : line.split("\\s+")) { //$NON-NLS-1$
+                minimum = Math.max(minimum, this.textExtentCache.textExtent(gc, fontData, word).x);
+            }
+        }
+        return new Point(preferred, minimum);
+    }
+
+    /**
+     * Returns the given percentile of the widths: the smallest width greater or equal to the given percent of the
+     * widths.
+     * 
+     * @param widths
+     *            the widths
+     * @param percentile
+     *            the percentile between 1 and 100
+     * @return the width or 0 if empty
+     */
+    static int percentile(List<Integer> widths, int percentile) {
+        if (widths.isEmpty()) {
+            return 0;
+        }
+        int[] sorted = new int[widths.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = widths.get(i).intValue();
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(sorted.length * percentile / 100d) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Read the rows and pick the sample: the first rows and a random reservoir of the remaining rows. The rows are
+     * closed when read, see {@link IRowSource#open()}.
+     * 
+     * @param source
+     *            the rows
+     * @return the sampled rows
+     */
+    List<T> sample(IRowSource<T> source) {
+        List<T> sample = new ArrayList<T>(this.headSize + this.reservoirSize);
+        List<T> reservoir = new ArrayList<T>(this.reservoirSize);
+        Random random = new Random(SEED);
+        Iterator<T> rows = source.open();
+        try {
+            long count = 0;
+            while (rows.hasNext()) {
+                T row = rows.next();
+                if (count < this.headSize) {
+                    sample.add(row);
+                } else if (reservoir.size() < this.reservoirSize) {
+                    reservoir.add(row);
+                } else if (this.reservoirSize > 0) {
+                    long j = (long) (random.nextDouble() * (count - this.headSize + 1));
+                    if (j < this.reservoirSize) {
+                        reservoir.set((int) j, row);
+                    }
+                }
+                count++;
+            }
+        } finally {
+            RowBuffer.close(rows);
+        }
+        sample.addAll(reservoir);
+        return sample;
+    }
+
+    /**
+     * Shrink the columns above their minimum width, proportionally to the width above their minimum, so the table fit
+     * the maximum width. The columns are never shrunk below their minimum width, so the table may remain wider.
+     * 
+     * @param widths
+     *            the column widths, updated
+     * @param mins
+     *            the minimum width of each column
+     * @param spacing
+     *            the space between the columns
+     * @param maxWidth
+     *            the maximum table width
+     */
+    static void shrink(int[] widths, int[] mins, int spacing, int maxWidth) {
+        int total = spacing * (widths.length - 1);
+        int slack = 0;
+        for (int i = 0; i < widths.length; i++) {
+            total += widths[i];
+            slack += widths[i] - mins[i];
+        }
+        if (total <= maxWidth) {
+            return;
+        }
+        int excess = Math.min(slack, total - maxWidth);
+        for (int i = 0; i < widths.length && slack > 0; i++) {
+            int shrink = (int) Math.ceil((long) excess * (widths[i] - mins[i]) / (double) slack);
+            shrink = Math.min(shrink, widths[i] - mins[i]);
+            slack -= widths[i] - mins[i];
+            excess -= shrink;
+            widths[i] -= shrink;
+        }
+    }
+
+    /**
+     * Sets the number of first rows sampled.
+     * 
+     * @param headSize
+     *            the number of rows
+     */
+    public void setHeadSize(int headSize) {
+        if (headSize < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.headSize = headSize;
+    }
+
+    /**
+     * Sets the maximum table width. The columns wider than their minimum width are shrunk proportionally to fit.
+     * 
+     * @param maxWidth
+     *            the width in points or 0 to not limit the width
+     */
+    public void setMaxWidth(int maxWidth) {
+        if (maxWidth < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.maxWidth = maxWidth;
+    }
+
+    /**
+     * Sets the percentile of the preferred widths used as column width. With 100, the widest sampled cell fit without
+     * wrapping.
+     * 
+     * @param percentile
+     *            the percentile between 1 and 100
+     */
+    public void setPercentile(int percentile) {
+        if (percentile < 1 || percentile > 100) {
+            throw new IllegalArgumentException();
+        }
+        this.percentile = percentile;
+    }
+
+    /**
+     * Sets the number of random rows sampled after the first rows.
+     * 
+     * @param reservoirSize
+     *            the number of rows
+     */
+    public void setReservoirSize(int reservoirSize) {
+        if (reservoirSize < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.reservoirSize = reservoirSize;
+    }
+
+    /**
+     * Sets the cache used to measure the text.
+     * 
+     * @param textExtentCache
+     *            the text extent cache
+     */
+    public void setTextExtentCache(TextExtentCache textExtentCache) {
+        if (textExtentCache == null) {
+            throw new NullPointerException();
+        }
+        this.textExtentCache = textExtentCache;
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.nebula.paperclips.core.Print;
+import org.eclipse.nebula.paperclips.core.PrintIterator;
+import org.eclipse.nebula.paperclips.core.PrintPiece;
+
+import org.eclipse.swt.graphics.Device;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Point;
+
+/**
+ * A wrapper print counting the pieces created by the target iterators and the number of times they are copied. Used
+ * to report metrics about a document. Only the wrapped print is counted, not the prints nested in it: wrapping the
+ * root print of a document counts the pages and the page layout attempts.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+class CountingPrint implements Print {
+
+    /**
+     * Number of copies of the iterators.
+     */
+    final AtomicLong copies = new AtomicLong();
+
+    /**
+     * Number of pieces created.
+     */
+    final AtomicLong pieces = new AtomicLong();
+
+    /**
+     * The wrapped print.
+     */
+    final Print target;
+
+    /**
+     * Create a new counting print.
+     * 
+     * @param target
+     *            the print to wrap
+     */
+    CountingPrint(Print target) {
+        if (target == null) {
+            throw new NullPointerException();
+        }
+        this.target = target;
+    }
+
+    /**
+     * Returns the number of copies of the iterators.
+     * 
+     * @return the number of copies
+     */
+    long getCopyCount() {
+        return this.copies.get();
+    }
+
+    /**
+     * Returns the number of pieces created.
+     * 
+     * @return the number of pieces
+     */
+    long getPieceCount() {
+        return this.pieces.get();
+    }
+
+    public PrintIterator iterator(Device device, GC gc) {
+        return new CountingIterator(this, this.target.iterator(device, gc));
+    }
+}
+
+class CountingIterator implements PrintIterator {
+    private final CountingPrint print;
+    private final PrintIterator target;
+
+    CountingIterator(CountingPrint print, PrintIterator target) {
+        this.print = print;
+        this.target = target;
+    }
+
+    public boolean hasNext() {
+        return target.hasNext();
+    }
+
+    public Point minimumSize() {
+        return target.minimumSize();
+    }
+
+    public Point preferredSize() {
+        return target.preferredSize();
+    }
+
+    public PrintPiece next(int width, int height) {
+        PrintPiece piece = target.next(width, height);
+        if (piece != null) print.pieces.incrementAndGet();
+        return piece;
+    }
+
+    public PrintIterator copy() {
+        print.copies.incrementAndGet();
+        return new CountingIterator(print, target.copy());
+    }
+}
@@ -0,0 +1,346 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Device;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.FontData;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.graphics.Resource;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Pool of fonts and colors shared by the prints laid out on a device. Print implementations acquire a font or a color
+ * when creating their iterator and release it when done. A single native resource is allocated per font data or RGB
+ * value and per device, no matter how many cells use it.
+ * <p>
+ * The resources are reference counted. Unused resources are kept until {@link #purge()} so the next page may reuse
+ * them. All the resources are disposed with the pool when the job is finished, see {@link #dispose(Device)}, which
+ * should be called before disposing a device used with {@link #get(Device)}. The pools of the devices disposed without
+ * it, e.g.: a printer created and disposed by PaperClips, are released when the next pool is created.
+ * The pool of a display is shared by all the users of the display, it is kept with the display and must not be
+ * disposed by one of them.
+ * <p>
+ * A pool bound to a printer may be used by any thread laying out or painting on that printer, like PaperClips does
+ * when laying out in the background: SWT doesn't bind the resources of a printer to the user-interface thread. On GTK,
+ * a font is a Pango font description and a color an RGBA value, neither of them touches the display, so creating them
+ * outside the user-interface thread is safe. A pool bound to a display must only be used from the thread of that
+ * display. This class is thread safe.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class DeviceResourcePool {
+
+    /**
+     * A pooled resource.
+     */
+    private static class Entry {
+
+        int references;
+
+        final Resource resource;
+
+        Entry(Resource resource) {
+            this.resource = resource;
+        }
+    }
+
+    /**
+     * Pools by device. Entries are removed when the pool is disposed.
+     */
+    private static final Map<Device, DeviceResourcePool> pools = new IdentityHashMap<Device, DeviceResourcePool>();
+
+    /**
+     * Dispose the pool of the given device, if any, and all its resources. The text extents measured on the device are
+     * also discarded from the {@link TextExtentCache}. Should be called before disposing the device, when the print job
+     * is finished.
+     * 
+     * @param device
+     *            the device
+     */
+    public static void dispose(Device device) {
+        DeviceResourcePool pool;
+        synchronized (pools) {
+            pool = pools.get(device);
+        }
+        if (pool != null) {
+            pool.dispose();
+        }
+        TextExtentCache.getDefault().remove(device);
+    }
+
+    /**
+     * Release the pools of the devices already disposed. Their resources were freed with the device. Must be called
+     * while holding the lock on {@link #pools}.
+     */
+    private static void removeDisposed() {
+        Iterator<Map.Entry<Device, DeviceResourcePool>> iter = pools.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<Device, DeviceResourcePool> e = iter.next();
+            if (e.getKey().isDisposed()) {
+                iter.remove();
+                DeviceResourcePool pool = e.getValue();
+                synchronized (pool) {
+                    pool.entries.clear();
+                    pool.resources.clear();
+                }
+                TextExtentCache.getDefault().remove(e.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns the pool of the given device. A new pool is created if required. The pools of the devices disposed
+     * without calling {@link #dispose(Device)} are released.
+     * 
+     * @param device
+     *            the device
+     * @return the pool
+     */
+    public static DeviceResourcePool get(Device device) {
+        if (device == null) {
+            throw new NullPointerException();
+        }
+        synchronized (pools) {
+            DeviceResourcePool pool = pools.get(device);
+            if (pool == null) {
+                removeDisposed();
+                pools.put(device, pool = new DeviceResourcePool(device));
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * The device.
+     */
+    private final Device device;
+
+    /**
+     * The pooled resources by key: the font data string or the RGB value.
+     */
+    private Map<Object, Entry> entries = new HashMap<Object, Entry>();
+
+    /**
+     * Number of requests served by a pooled resource.
+     */
+    private long hitCount;
+
+    /**
+     * Number of native resources allocated.
+     */
+    private long missCount;
+
+    /**
+     * The pooled resources by instance. Used to release them.
+     */
+    private Map<Resource, Entry> resources = new IdentityHashMap<Resource, Entry>();
+
+    /**
+     * Create a new pool.
+     * 
+     * @param device
+     *            the device
+     */
+    private DeviceResourcePool(Device device) {
+        this.device = device;
+    }
+
+    /**
+     * Acquire a pooled resource.
+     * 
+     * @param key
+     *            the resource key
+     * @return the entry or null if not pooled
+     */
+    private Entry acquire(Object key) {
+        Entry entry = this.entries.get(key);
+        if (entry != null) {
+            entry.references++;
+            this.hitCount++;
+        } else {
+            this.missCount++;
+        }
+        return entry;
+    }
+
+    /**
+     * Add a new resource to the pool with one reference.
+     * 
+     * @param key
+     *            the resource key
+     * @param resource
+     *            the resource
+     */
+    private void add(Object key, Resource resource) {
+        Entry entry = new Entry(resource);
+        entry.references = 1;
+        this.entries.put(key, entry);
+        this.resources.put(resource, entry);
+    }
+
+    /**
+     * Check if the current thread may allocate resources on the device of this pool.
+     */
+    private void checkThread() {
+        if (this.device instanceof Display && ((Display) this.device).getThread() != Thread.currentThread()) {
+            SWT.error(SWT.ERROR_THREAD_INVALID_ACCESS);
+        }
+    }
+
+    /**
+     * Dispose all the resources, referenced or not, and remove this pool. The resources must not be used afterward.
+     */
+    public void dispose() {
+        synchronized (pools) {
+            if (pools.get(this.device) == this) {
+                pools.remove(this.device);
+            }
+        }
+        synchronized (this) {
+            for (Entry entry : this.entries.values()) {
+                if (!entry.resource.isDisposed()) {
+                    entry.resource.dispose();
+                }
+            }
+            this.entries.clear();
+            this.resources.clear();
+        }
+    }
+
+    /**
+     * Returns a color for the given RGB value. The color must be released with {@link #release(Resource)} and must not
+     * be disposed by the caller.
+     * 
+     * @param rgb
+     *            the RGB value
+     * @return the color
+     * @throws SWTException
+     *             ERROR_THREAD_INVALID_ACCESS - if the device is a display and not called from its thread
+     */
+    public synchronized Color getColor(RGB rgb) {
+        checkThread();
+        RGB key = new RGB(rgb.red, rgb.green, rgb.blue);
+        Entry entry = acquire(key);
+        if (entry != null) {
+            return (Color) entry.resource;
+        }
+        Color color = new Color(this.device, key);
+        add(key, color);
+        return color;
+    }
+
+    /**
+     * Returns the device of this pool.
+     * 
+     * @return the device
+     */
+    public Device getDevice() {
+        return this.device;
+    }
+
+    /**
+     * Returns a font for the given font data. The font must be released with {@link #release(Resource)} and must not be
+     * disposed by the caller. The font data is copied, it may be modified afterward.
+     * 
+     * @param fontData
+     *            the font data
+     * @return the font
+     * @throws SWTException
+     *             ERROR_THREAD_INVALID_ACCESS - if the device is a display and not called from its thread
+     */
+    public synchronized Font getFont(FontData fontData) {
+        checkThread();
+        String key = fontData.toString();
+        Entry entry = acquire(key);
+        if (entry != null) {
+            return (Font) entry.resource;
+        }
+        Font font = new Font(this.device, fontData);
+        add(key, font);
+        return font;
+    }
+
+    /**
+     * Returns the number of requests served by a pooled resource.
+     * 
+     * @return the number of hits
+     */
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * Returns the number of native resources allocated by this pool.
+     * 
+     * @return the number of misses
+     */
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * Returns the number of resources held by this pool, referenced or not.
+     * 
+     * @return the number of resources
+     */
+    public synchronized int getResourceCount() {
+        return this.entries.size();
+    }
+
+    /**
+     * Dispose the resources not referenced anymore.
+     */
+    public synchronized void purge() {
+        Iterator<Entry> iter = this.entries.values().iterator();
+        while (iter.hasNext()) {
+            Entry entry = iter.next();
+            if (entry.references <= 0) {
+                iter.remove();
+                this.resources.remove(entry.resource);
+                entry.resource.dispose();
+            }
+        }
+    }
+
+    /**
+     * Release a font or a color acquired from this pool. The resource is kept in the pool until purged or disposed.
+     * 
+     * @param resource
+     *            the resource
+     * @throws IllegalArgumentException
+     *             if the resource doesn't belong to this pool
+     */
+    public synchronized void release(Resource resource) {
+        Entry entry = this.resources.get(resource);
+        if (entry == null) {
+            throw new IllegalArgumentException();
+        }
+        if (entry.references > 0) {
+            entry.references--;
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.swt.graphics.Device;
+import org.eclipse.swt.graphics.Point;
+
+/**
+ * Instances of this class convert points (72pts = 1") into pixels for a specific device. The device resolution is
+ * queried once and cached per device, since {@link Device#getDPI()} may be expensive to call (e.g.: native call on
+ * GTK).
+ * <p>
+ * Print implementations should use this class when creating their iterator:
+ * 
+ * <pre>
+ * DeviceScale scale = DeviceScale.get(device);
+ * this.width = scale.toPixelsX(print.width);
+ * this.height = scale.toPixelsY(print.height);
+ * </pre>
+ * 
+ * This class is thread safe.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class DeviceScale {
+
+    /**
+     * Number of points per inch.
+     */
+    public static final int POINTS_PER_INCH = 72;
+
+    /**
+     * Cached scales by device. Entries are removed when the device is garbage collected.
+     */
+    private static final Map<Device, DeviceScale> scales = new WeakHashMap<Device, DeviceScale>();
+
+    /**
+     * Returns the scale of the given device.
+     * 
+     * @param device
+     *            the device
+     * @return the scale
+     */
+    public static DeviceScale get(Device device) {
+        if (device == null) {
+            throw new NullPointerException();
+        }
+        synchronized (scales) {
+            DeviceScale scale = scales.get(device);
+            if (scale == null) {
+                scales.put(device, scale = new DeviceScale(device.getDPI()));
+            }
+            return scale;
+        }
+    }
+
+    /**
+     * Horizontal resolution in dot per inch.
+     */
+    private final int dpiX;
+
+    /**
+     * Vertical resolution in dot per inch.
+     */
+    private final int dpiY;
+
+    /**
+     * Create a new scale for the given resolution.
+     * 
+     * @param dpi
+     *            the device resolution
+     */
+    private DeviceScale(Point dpi) {
+        this.dpiX = dpi.x;
+        this.dpiY = dpi.y;
+    }
+
+    /**
+     * Returns the device resolution.
+     * 
+     * @return the resolution in dot per inch
+     */
+    public Point getDPI() {
+        return new Point(this.dpiX, this.dpiY);
+    }
+
+    /**
+     * Convert a point into pixels.
+     * 
+     * @param point
+     *            the coordinates in points
+     * @return the coordinates in pixels
+     */
+    public Point toPixels(Point point) {
+        return new Point(toPixelsX(point.x), toPixelsY(point.y));
+    }
+
+    /**
+     * Convert an horizontal length into pixels.
+     * 
+     * @param points
+     *            the length in points
+     * @return the length in pixels
+     */
+    public int toPixelsX(int points) {
+        return Math.round(points * this.dpiX / (float) POINTS_PER_INCH);
+    }
+
+    /**
+     * Convert an horizontal length in pixels into points. The result is rounded up so the length converted back into
+     * pixels is not shorter.
+     * 
+     * @param pixels
+     *            the length in pixels
+     * @return the length in points
+     */
+    public int toPointsX(int pixels) {
+        return (int) Math.ceil(pixels * POINTS_PER_INCH / (float) this.dpiX);
+    }
+
+    /**
+     * Convert a vertical length into pixels.
+     * 
+     * @param points
+     *            the length in points
+     * @return the length in pixels
+     */
+    public int toPixelsY(int points) {
+        return Math.round(points * this.dpiY / (float) POINTS_PER_INCH);
+    }
+
+}
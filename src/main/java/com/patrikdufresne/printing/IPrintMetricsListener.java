@@ -0,0 +1,101 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+/**
+ * Class implementing this interface receive the time spent in each phase of the print preparation and the related
+ * counts. Used to find the print factories that are slow to print or to preview.
+ * <p>
+ * The listener may be called by a thread other than the main thread. Implementations must be thread safe.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public interface IPrintMetricsListener {
+
+    /**
+     * Number of bytes written to the output file. Only known when printing to a file.
+     */
+    public static final String COUNT_BYTES = "bytes"; //$NON-NLS-1$
+
+    /**
+     * Number of copies of the root iterator of the document. PaperClips copies the root iterator to try a layout, so
+     * it's roughly the number of page layout attempts. The copies of the nested iterators are not counted.
+     */
+    public static final String COUNT_ROOT_ITERATOR_COPIES = "rootIteratorCopies"; //$NON-NLS-1$
+
+    /**
+     * Number of pages produced.
+     */
+    public static final String COUNT_PAGES = "pages"; //$NON-NLS-1$
+
+    /**
+     * Number of pieces created by the root iterator of the document, roughly one per page laid out. The pieces of the
+     * nested iterators are not counted.
+     */
+    public static final String COUNT_ROOT_PIECES = "rootPieces"; //$NON-NLS-1$
+
+    /**
+     * Phase creating the Print object with {@link IPrintFactory#createPrint()}.
+     */
+    public static final String PHASE_CREATE_PRINT = "createPrint"; //$NON-NLS-1$
+
+    /**
+     * Phase initializing the factory, usually querying the data.
+     */
+    public static final String PHASE_INIT_FACTORY = "initFactory"; //$NON-NLS-1$
+
+    /**
+     * Phase sending the pages to the printer. It include the pagination unless the pages were laid out in background
+     * before printing.
+     */
+    public static final String PHASE_OUTPUT = "output"; //$NON-NLS-1$
+
+    /**
+     * Phase laying out the pages.
+     */
+    public static final String PHASE_PAGINATION = "pagination"; //$NON-NLS-1$
+
+    /**
+     * Phase creating the preview dialog, including the layout of the first pages displayed.
+     */
+    public static final String PHASE_PREVIEW = "preview"; //$NON-NLS-1$
+
+    /**
+     * Notify this listener a count was recorded for a print job.
+     * 
+     * @param jobName
+     *            the print job name
+     * @param counter
+     *            the counter name, one of the COUNT_* constants
+     * @param count
+     *            the count
+     */
+    void countRecorded(String jobName, String counter, long count);
+
+    /**
+     * Notify this listener a phase was completed for a print job.
+     * 
+     * @param jobName
+     *            the print job name
+     * @param phase
+     *            the phase name, one of the PHASE_* constants
+     * @param nanos
+     *            the time spent in nanoseconds
+     */
+    void phaseCompleted(String jobName, String phase, long nanos);
+
+}
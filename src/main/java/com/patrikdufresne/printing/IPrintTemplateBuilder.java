@@ -0,0 +1,39 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import org.eclipse.nebula.paperclips.core.Print;
+
+/**
+ * Class implementing this interface create the static fragments of a report (letterhead, column headers, legal
+ * footer, etc.) to be kept in a {@link PrintTemplateCache}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public interface IPrintTemplateBuilder {
+
+    /**
+     * Create the template. The returned print is shared between the factories and threads. It must not be modified
+     * once created.
+     * 
+     * @param parameters
+     *            the template parameters, as given to the cache
+     * @return a Print object
+     */
+    Print createPrint(Object[] parameters);
+
+}
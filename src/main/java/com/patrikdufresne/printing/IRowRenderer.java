@@ -0,0 +1,40 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import org.eclipse.nebula.paperclips.core.Print;
+
+/**
+ * Class implementing this interface create the cells of a row of a {@link StreamingTablePrint}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ * @param <T>
+ *            the row type
+ */
+public interface IRowRenderer<T> {
+
+    /**
+     * Create the cell prints of the given row, one per column. A null cell is left empty. Called when the row is laid
+     * out, possibly more than once for the same row. The cells are discarded once laid out.
+     * 
+     * @param row
+     *            the row value
+     * @return the cells
+     */
+    Print[] createCells(T row);
+
+}
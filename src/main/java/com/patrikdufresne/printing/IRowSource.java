@@ -0,0 +1,44 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.util.Iterator;
+
+/**
+ * Class implementing this interface provide the rows of a {@link StreamingTablePrint}, e.g.: a database cursor. The
+ * rows are pulled one at a time as the pages are laid out.
+ * 
+ * @author Patrik Dufresne
+ * 
+ * @param <T>
+ *            the row type
+ */
+public interface IRowSource<T> {
+
+    /**
+     * Returns a new iterator over the rows, starting at the first row. Called every time the table is laid out, e.g.:
+     * once for the preview and once for the printer, and once more by a {@link ColumnWidthSampler} to pick its sample.
+     * The rows must be returned in the same order every time.
+     * <p>
+     * The iterator is owned by the table. If it implements {@link java.io.Closeable}, e.g.: to release a database
+     * cursor, the table closes it when all the rows were read. When a layout is discarded before the end, e.g.: a
+     * preview closed halfway, the iterator is closed once the layout is garbage collected, by the finalizer thread.
+     * 
+     * @return an iterator
+     */
+    Iterator<T> open();
+
+}
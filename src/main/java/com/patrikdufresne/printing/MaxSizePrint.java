@@ -15,8 +15,6 @@
  */
 package com.patrikdufresne.printing;
 
-import org.eclipse.nebula.paperclips.core.CompositeEntry;
-import org.eclipse.nebula.paperclips.core.CompositePiece;
 import org.eclipse.nebula.paperclips.core.PaperClips;
 import org.eclipse.nebula.paperclips.core.Print;
 import org.eclipse.nebula.paperclips.core.PrintIterator;
@@ -102,16 +100,23 @@ class MaxSizeIterator implements PrintIterator {
     private final int maxWidth;
     private final int maxHeight;
 
+    // Sizes cached until next() consumes the target content.
+    private Point minimumSize;
+    private Point preferredSize;
+
     MaxSizeIterator(MaxSizePrint print, Device device, GC gc) {
         this.target = print.target.iterator(device, gc);
-        this.maxWidth = Math.round(print.width * device.getDPI().x / 72f);
-        this.maxHeight = Math.round(print.height * device.getDPI().y / 72f);
+        DeviceScale scale = DeviceScale.get(device);
+        this.maxWidth = scale.toPixelsX(print.width);
+        this.maxHeight = scale.toPixelsY(print.height);
     }
 
     MaxSizeIterator(MaxSizeIterator that) {
         this.target = that.target.copy();
         this.maxWidth = that.maxWidth;
         this.maxHeight = that.maxHeight;
+        this.minimumSize = that.minimumSize;
+        this.preferredSize = that.preferredSize;
     }
 
     public boolean hasNext() {
@@ -119,17 +124,23 @@ class MaxSizeIterator implements PrintIterator {
     }
 
     public Point minimumSize() {
-        Point size = target.minimumSize();
-        int x = maxWidth > 0 ? Math.min(size.x, maxWidth) : size.x;
-        int y = maxHeight > 0 ? Math.min(size.y, maxHeight) : size.y;
-        return new Point(x, y);
+        if (this.minimumSize == null) {
+            Point size = target.minimumSize();
+            int x = maxWidth > 0 ? Math.min(size.x, maxWidth) : size.x;
+            int y = maxHeight > 0 ? Math.min(size.y, maxHeight) : size.y;
+            this.minimumSize = new Point(x, y);
+        }
+        return new Point(this.minimumSize.x, this.minimumSize.y);
     }
 
     public Point preferredSize() {
-        Point size = target.preferredSize();
-        int x = maxWidth > 0 ? Math.min(size.x, maxWidth) : size.x;
-        int y = maxHeight > 0 ? Math.min(size.y, maxHeight) : size.y;
-        return new Point(x, y);
+        if (this.preferredSize == null) {
+            Point size = target.preferredSize();
+            int x = maxWidth > 0 ? Math.min(size.x, maxWidth) : size.x;
+            int y = maxHeight > 0 ? Math.min(size.y, maxHeight) : size.y;
+            this.preferredSize = new Point(x, y);
+        }
+        return new Point(this.preferredSize.x, this.preferredSize.y);
     }
 
     public PrintPiece next(int width, int height) {
@@ -138,11 +149,12 @@ class MaxSizeIterator implements PrintIterator {
         PrintPiece piece = PaperClips.next(target, x, y);
         if (piece == null) return null;
 
-        Point size = piece.getSize();
-
-        CompositeEntry entry = new CompositeEntry(piece, new Point(0, 0));
+        // The target content changed
+        this.minimumSize = null;
+        this.preferredSize = null;
 
-        return new CompositePiece(new CompositeEntry[] { entry }, size);
+        // The piece is not translated, no need to wrap it.
+        return piece;
     }
 
     public PrintIterator copy() {
@@ -15,12 +15,21 @@
  */
 package com.patrikdufresne.printing;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
 import org.eclipse.nebula.paperclips.core.page.PageDecoration;
 import org.eclipse.nebula.paperclips.core.page.PageNumber;
 import org.eclipse.nebula.paperclips.core.page.PagePrint;
 import org.eclipse.nebula.paperclips.core.Print;
 import org.eclipse.nebula.paperclips.core.SeriesPrint;
 
+import org.eclipse.core.runtime.OperationCanceledException;
+
 /**
  * This implementation of {@link IPrintFactory} allows to create a different
  * header for the same document bu only allows a single footer. The use case is
@@ -45,6 +54,22 @@ public class MultipleHeaderSingleFooterPrintFactory extends PrintFactory {
 
     }
 
+    /**
+     * Executor used to create the body of the sections or null to create them
+     * sequentially.
+     */
+    private Executor executor;
+
+    /**
+     * Sections with body being created by the executor, in declaration order.
+     */
+    private List<HeaderSection> pendingSections;
+
+    /**
+     * Body of the pending sections.
+     */
+    private List<FutureTask<Print>> pendingBodies;
+
     private SeriesPrint series;
 
     /**
@@ -64,8 +89,18 @@ public class MultipleHeaderSingleFooterPrintFactory extends PrintFactory {
     public Print createPrint() {
         // Create the series print to contains the sections.
         this.series = new SeriesPrint();
-
-        createSections();
+        this.pendingSections = new ArrayList<HeaderSection>();
+        this.pendingBodies = new ArrayList<FutureTask<Print>>();
+        try {
+            createSections();
+            addPendingSections();
+        } finally {
+            for (FutureTask<Print> task : this.pendingBodies) {
+                task.cancel(true);
+            }
+            this.pendingSections = null;
+            this.pendingBodies = null;
+        }
 
         Print footerPagePrint = new PagePrint(null, this.series, new PageDecoration() {
             @Override
@@ -89,21 +124,106 @@ public class MultipleHeaderSingleFooterPrintFactory extends PrintFactory {
     }
 
     /**
-     * This function is called to add a new section to this print.
+     * This function is called to add a new section to this print. When an executor is set, the body of the section is
+     * created concurrently if this function is called from {@link #createSections()}. Otherwise, the body is created
+     * right away.
      * 
      * @param section
      *            The section
      */
     protected void addSection(final HeaderSection section) {
+        if (this.executor != null && this.pendingSections != null) {
+            // Create the body concurrently. It's added to the series later.
+            FutureTask<Print> task = new FutureTask<Print>(new Callable<Print>() {
+                @Override
+                public Print call() throws Exception {
+                    return section.createBodyArea();
+                }
+            });
+            this.pendingSections.add(section);
+            this.pendingBodies.add(task);
+            this.executor.execute(task);
+            return;
+        }
+        addSection(section, section.createBodyArea());
+    }
 
+    /**
+     * Add the section with the given body to the series.
+     * 
+     * @param section
+     *            the section
+     * @param body
+     *            the section body
+     */
+    private void addSection(final HeaderSection section, Print body) {
         PagePrint pagePrint = new PagePrint(new PageDecoration() {
             @Override
             public Print createPrint(PageNumber pageNumber) {
                 return section.createHeaderArea(pageNumber);
             }
-        }, section.createBodyArea(), null);
+        }, body, null);
         this.series.add(pagePrint);
+    }
+
+    /**
+     * Wait for the body of the pending sections and add them to the series in
+     * declaration order. The bodies not yet started by the executor are created
+     * by the calling thread. Exceptions raised by
+     * {@link HeaderSection#createBodyArea()} are propagated.
+     */
+    private void addPendingSections() {
+        while (!this.pendingBodies.isEmpty()) {
+            FutureTask<Print> task = this.pendingBodies.remove(0);
+            HeaderSection section = this.pendingSections.remove(0);
+            Print body;
+            // Create the body on the calling thread if the executor didn't start
+            // it yet: the executor may be busy running this very call.
+            task.run();
+            try {
+                body = task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new OperationCanceledException();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+            addSection(section, body);
+        }
+    }
 
+    /**
+     * Returns the executor used to create the body of the sections.
+     * 
+     * @return the executor or null if the sections are created sequentially
+     */
+    public Executor getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Sets the executor used to create the body of the sections. When set, the
+     * calls to {@link HeaderSection#createBodyArea()} run concurrently on the
+     * executor and the sections are assembled in declaration order once they
+     * are all created. The implementation of
+     * {@link HeaderSection#createBodyArea()} must then be thread safe. Default
+     * is null, the sections are created sequentially.
+     * <p>
+     * The thread calling {@link #createPrint()} creates the bodies the executor
+     * didn't start yet, so the executor may be the pool running
+     * {@link #createPrint()} without deadlock, even with a single thread.
+     * 
+     * @param executor
+     *            the executor or null
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
     }
 
     /**
@@ -162,11 +162,15 @@ class OffsetIterator implements PrintIterator {
     private final int vAlign;
     private final Point offset;
 
+    // Sizes cached until next() consumes the target content.
+    private Point minimumSize;
+    private Point preferredSize;
+
     OffsetIterator(OffsetPrint print, Device device, GC gc) {
         this.target = print.target.iterator(device, gc);
         this.hAlign = print.hAlign;
         this.vAlign = print.vAlign;
-        this.offset = new Point(Math.round(print.offset.x * device.getDPI().x / 72f), Math.round(print.offset.y * device.getDPI().y / 72f));
+        this.offset = DeviceScale.get(device).toPixels(print.offset);
     }
 
     OffsetIterator(OffsetIterator that) {
@@ -174,6 +178,8 @@ class OffsetIterator implements PrintIterator {
         this.hAlign = that.hAlign;
         this.vAlign = that.vAlign;
         this.offset = that.offset;
+        this.minimumSize = that.minimumSize;
+        this.preferredSize = that.preferredSize;
     }
 
     public boolean hasNext() {
@@ -181,39 +187,48 @@ class OffsetIterator implements PrintIterator {
     }
 
     public Point minimumSize() {
-        Point size = target.minimumSize();
-        int x = size.x + this.offset.x;
-        int y = size.y + this.offset.y;
-        return new Point(x, y);
+        if (this.minimumSize == null) {
+            Point size = target.minimumSize();
+            int x = size.x + this.offset.x;
+            int y = size.y + this.offset.y;
+            this.minimumSize = new Point(x, y);
+        }
+        return new Point(this.minimumSize.x, this.minimumSize.y);
     }
 
     public Point preferredSize() {
-        Point size = target.preferredSize();
-        int x = size.x + this.offset.x;
-        int y = size.y + this.offset.y;
-        return new Point(x, y);
+        if (this.preferredSize == null) {
+            Point size = target.preferredSize();
+            int x = size.x + this.offset.x;
+            int y = size.y + this.offset.y;
+            this.preferredSize = new Point(x, y);
+        }
+        return new Point(this.preferredSize.x, this.preferredSize.y);
     }
 
     public PrintPiece next(int width, int height) {
         PrintPiece piece = PaperClips.next(target, width - this.offset.x, height - this.offset.y);
         if (piece == null) return null;
 
+        // The target content changed
+        this.minimumSize = null;
+        this.preferredSize = null;
+
         Point size = piece.getSize();
-        Point offset = new Point(this.offset.x, this.offset.y);
+        int x = this.offset.x;
+        int y = this.offset.y;
 
-        if (hAlign == SWT.CENTER) offset.x = (width - size.x) / 2;
-        else if (hAlign == SWT.RIGHT) offset.x = width - size.x - this.offset.x;
+        if (hAlign == SWT.CENTER) x = (width - size.x) / 2;
+        else if (hAlign == SWT.RIGHT) x = width - size.x - this.offset.x;
 
         if (hAlign != SWT.LEFT) size.x = width;
 
-        if (vAlign == SWT.CENTER) offset.y = (height - size.y) / 2;
-        else if (vAlign == SWT.BOTTOM) offset.y = height - size.y - this.offset.y;
+        if (vAlign == SWT.CENTER) y = (height - size.y) / 2;
+        else if (vAlign == SWT.BOTTOM) y = height - size.y - this.offset.y;
 
         if (vAlign != SWT.TOP) size.y = height;
 
-        CompositeEntry entry = new CompositeEntry(piece, offset);
-
-        return new CompositePiece(new CompositeEntry[] { entry }, size);
+        return new TranslatePiece(piece, x, y, size.x, size.y);
     }
 
     public PrintIterator copy() {
@@ -132,20 +132,36 @@ public class PaddingPrint implements Print {
 
 class PaddingIterator implements PrintIterator {
     private final PrintIterator target;
-    private final Rectangle padding;
+    private final int left;
+    private final int top;
+    private final int horizontal;
+    private final int vertical;
+
+    // Sizes cached until next() consumes the target content.
+    private Point minimumSize;
+    private Point preferredSize;
 
     PaddingIterator(PaddingPrint print, Device device, GC gc) {
         this.target = print.target.iterator(device, gc);
-        int xPadding = Math.round(print.padding.x * device.getDPI().x / 72f);
-        int yPadding = Math.round(print.padding.y * device.getDPI().x / 72f);
-        int wPadding = Math.round(print.padding.width * device.getDPI().x / 72f);
-        int hPadding = Math.round(print.padding.height * device.getDPI().x / 72f);
-        this.padding = new Rectangle(xPadding, yPadding, wPadding, hPadding);
+        DeviceScale scale = DeviceScale.get(device);
+        int xPadding = scale.toPixelsX(print.padding.x);
+        int yPadding = scale.toPixelsY(print.padding.y);
+        int wPadding = scale.toPixelsX(print.padding.width);
+        int hPadding = scale.toPixelsY(print.padding.height);
+        this.left = xPadding;
+        this.top = yPadding;
+        this.horizontal = xPadding + wPadding;
+        this.vertical = yPadding + hPadding;
     }
 
     PaddingIterator(PaddingIterator that) {
         this.target = that.target.copy();
-        this.padding = that.padding;
+        this.left = that.left;
+        this.top = that.top;
+        this.horizontal = that.horizontal;
+        this.vertical = that.vertical;
+        this.minimumSize = that.minimumSize;
+        this.preferredSize = that.preferredSize;
     }
 
     public boolean hasNext() {
@@ -153,29 +169,36 @@ class PaddingIterator implements PrintIterator {
     }
 
     public Point minimumSize() {
-        Point size = target.minimumSize();
-        int x = size.x + this.padding.x + this.padding.width;
-        int y = size.y + this.padding.y + this.padding.height;
-        return new Point(x, y);
+        if (this.minimumSize == null) {
+            Point size = target.minimumSize();
+            int x = size.x + this.horizontal;
+            int y = size.y + this.vertical;
+            this.minimumSize = new Point(x, y);
+        }
+        return new Point(this.minimumSize.x, this.minimumSize.y);
     }
 
     public Point preferredSize() {
-        Point size = target.preferredSize();
-        int x = size.x + this.padding.x + this.padding.width;
-        int y = size.y + this.padding.y + this.padding.height;
-        return new Point(x, y);
+        if (this.preferredSize == null) {
+            Point size = target.preferredSize();
+            int x = size.x + this.horizontal;
+            int y = size.y + this.vertical;
+            this.preferredSize = new Point(x, y);
+        }
+        return new Point(this.preferredSize.x, this.preferredSize.y);
     }
 
     public PrintPiece next(int width, int height) {
-        PrintPiece piece = PaperClips.next(target, width - this.padding.x - this.padding.width, height - this.padding.y - this.padding.height);
+        PrintPiece piece = PaperClips.next(target, width - this.horizontal, height - this.vertical);
         if (piece == null) return null;
 
-        Point size = piece.getSize();
-        Point offset = new Point(this.padding.x, this.padding.y);
+        // The target content changed
+        this.minimumSize = null;
+        this.preferredSize = null;
 
-        CompositeEntry entry = new CompositeEntry(piece, offset);
+        Point size = piece.getSize();
 
-        return new CompositePiece(new CompositeEntry[] { entry }, size);
+        return new TranslatePiece(piece, this.left, this.top, size.x, size.y);
     }
 
     public PrintIterator copy() {
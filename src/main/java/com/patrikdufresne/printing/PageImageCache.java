@@ -0,0 +1,242 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Rectangle;
+
+/**
+ * Cache of rendered page images. The images are keyed by the page layout, the page index and the scale. When the
+ * memory used by the images exceed the budget, the least recently used images are disposed.
+ * <p>
+ * This class is not thread safe and should only be used by the main thread.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class PageImageCache {
+
+    /**
+     * Key of a cached image.
+     */
+    private static class Key {
+
+        final Object layout;
+
+        final int pageIndex;
+
+        final float scale;
+
+        Key(Object layout, int pageIndex, float scale) {
+            this.layout = layout;
+            this.pageIndex = pageIndex;
+            this.scale = scale;
+        }
+
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null) return false;
+            if (getClass() != obj.getClass()) return false;
+            Key other = (Key) obj;
+            return this.layout == other.layout && this.pageIndex == other.pageIndex && Float.floatToIntBits(this.scale) == Float.floatToIntBits(other.scale);
+        }
+
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + System.identityHashCode(this.layout);
+            result = prime * result + this.pageIndex;
+            result = prime * result + Float.floatToIntBits(this.scale);
+            return result;
+        }
+    }
+
+    /**
+     * Number of bytes used per pixel.
+     */
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /**
+     * Returns the memory used by the given image.
+     * 
+     * @param image
+     *            the image
+     * @return the size in bytes
+     */
+    private static long sizeOf(Image image) {
+        Rectangle bounds = image.getBounds();
+        return (long) bounds.width * bounds.height * BYTES_PER_PIXEL;
+    }
+
+    /**
+     * The cached images in access order.
+     */
+    private LinkedHashMap<Key, Image> images = new LinkedHashMap<Key, Image>(16, 0.75f, true);
+
+    /**
+     * The memory budget in bytes.
+     */
+    private long maxSize;
+
+    /**
+     * The memory used by the cached images in bytes.
+     */
+    private long size;
+
+    /**
+     * Create a new cache.
+     * 
+     * @param maxSize
+     *            the memory budget in bytes
+     */
+    public PageImageCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Dispose all the cached images.
+     */
+    public void clear() {
+        for (Image image : this.images.values()) {
+            image.dispose();
+        }
+        this.images.clear();
+        this.size = 0;
+    }
+
+    /**
+     * Evict the least recently used images until the cache fit the budget. The most recent image is always kept.
+     */
+    private void evict() {
+        Iterator<Image> iter = this.images.values().iterator();
+        while (this.size > this.maxSize && this.images.size() > 1 && iter.hasNext()) {
+            Image image = iter.next();
+            iter.remove();
+            this.size -= sizeOf(image);
+            image.dispose();
+        }
+    }
+
+    /**
+     * Returns a cached image of the given page at any scale. Used to display a scaled image while rendering a new one.
+     * 
+     * @param layout
+     *            the page layout
+     * @param pageIndex
+     *            the page index
+     * @return an image or null
+     */
+    public Image find(Object layout, int pageIndex) {
+        Image found = null;
+        for (Entry<Key, Image> e : this.images.entrySet()) {
+            if (e.getKey().layout == layout && e.getKey().pageIndex == pageIndex) {
+                found = e.getValue();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the cached image.
+     * 
+     * @param layout
+     *            the page layout
+     * @param pageIndex
+     *            the page index
+     * @param scale
+     *            the scale
+     * @return the image or null if not cached
+     */
+    public Image get(Object layout, int pageIndex, float scale) {
+        return this.images.get(new Key(layout, pageIndex, scale));
+    }
+
+    /**
+     * Returns the memory budget.
+     * 
+     * @return the size in bytes
+     */
+    public long getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Returns the memory used by the cached images.
+     * 
+     * @return the size in bytes
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Add an image to the cache. The cache take ownership of the image. The image may be disposed by a following call
+     * to this function.
+     * 
+     * @param layout
+     *            the page layout
+     * @param pageIndex
+     *            the page index
+     * @param scale
+     *            the scale
+     * @param image
+     *            the image
+     */
+    public void put(Object layout, int pageIndex, float scale, Image image) {
+        Image old = this.images.put(new Key(layout, pageIndex, scale), image);
+        if (old != null && old != image) {
+            this.size -= sizeOf(old);
+            old.dispose();
+        }
+        this.size += sizeOf(image);
+        evict();
+    }
+
+    /**
+     * Dispose the images of the given layout.
+     * 
+     * @param layout
+     *            the page layout
+     */
+    public void remove(Object layout) {
+        Iterator<Map.Entry<Key, Image>> iter = this.images.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<Key, Image> e = iter.next();
+            if (e.getKey().layout == layout) {
+                iter.remove();
+                this.size -= sizeOf(e.getValue());
+                e.getValue().dispose();
+            }
+        }
+    }
+
+    /**
+     * Sets the memory budget. Images are evicted if required.
+     * 
+     * @param maxSize
+     *            the size in bytes
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        evict();
+    }
+
+}
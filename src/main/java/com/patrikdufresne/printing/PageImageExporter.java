@@ -0,0 +1,514 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.nebula.paperclips.core.Margins;
+import org.eclipse.nebula.paperclips.core.PaperClips;
+import org.eclipse.nebula.paperclips.core.PrintIterator;
+import org.eclipse.nebula.paperclips.core.PrintJob;
+import org.eclipse.nebula.paperclips.core.PrintPiece;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.ImageLoader;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.Transform;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * This class render the pages of a {@link PrintJob} to images without a printer nor the preview widget. It may be
+ * used to archive a document or to compare the rendering of a report with a reference image, e.g.: on a server
+ * running Xvfb.
+ * <p>
+ * The pages are laid out on the display, with the job margins, on a paper of the given size. They are rendered
+ * off-screen at the requested resolution. The rendering must be done by the display thread, while the images are
+ * encoded concurrently by a pool of threads.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class PageImageExporter {
+
+    /**
+     * Default resolution.
+     */
+    public static final int DEFAULT_DPI = 150;
+
+    /**
+     * Letter paper size in points.
+     */
+    public static final Point LETTER = new Point(612, 792);
+
+    /**
+     * Returns the file extension for the given image format.
+     * 
+     * @param format
+     *            the format (e.g.: {@link SWT#IMAGE_PNG})
+     * @return the extension
+     */
+    private static String getExtension(int format) {
+        switch (format) {
+        case SWT.IMAGE_JPEG:
+            return "jpg"; //$NON-NLS-1$
+        case SWT.IMAGE_BMP:
+            return "bmp"; //$NON-NLS-1$
+        default:
+            return "png"; //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * The output resolution.
+     */
+    private int dpi = DEFAULT_DPI;
+
+    /**
+     * The image format.
+     */
+    private int format = SWT.IMAGE_PNG;
+
+    /**
+     * Last page to render (1-based).
+     */
+    private int endPage = Integer.MAX_VALUE;
+
+    /**
+     * The print job to render.
+     */
+    private PrintJob job;
+
+    /**
+     * Time spent to layout the pages by the last export, in nanoseconds.
+     */
+    private long layoutTime;
+
+    /**
+     * Number of pages laid out by the last export.
+     */
+    private int pageCount;
+
+    /**
+     * The paper size in points in portrait orientation.
+     */
+    private Point paperSize = LETTER;
+
+    /**
+     * Time spent to render and encode the pages by the last export, in nanoseconds.
+     */
+    private long renderTime;
+
+    /**
+     * First page to render (1-based).
+     */
+    private int startPage = 1;
+
+    /**
+     * Number of threads used to encode the images.
+     */
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Create a new exporter for the print job created by the factory.
+     * 
+     * @param factory
+     *            the print factory
+     */
+    public PageImageExporter(IPrintFactory factory) {
+        this(PrintFactory.createPrintJob(factory));
+    }
+
+    /**
+     * Create a new exporter.
+     * 
+     * @param job
+     *            the print job to render
+     */
+    public PageImageExporter(PrintJob job) {
+        if (job == null) {
+            throw new NullPointerException();
+        }
+        this.job = job;
+    }
+
+    /**
+     * Encode the image into a file.
+     * 
+     * @param data
+     *            the image data
+     * @param file
+     *            the destination file
+     * @throws IOException
+     */
+    private void encode(ImageData data, File file) throws IOException {
+        ImageLoader loader = new ImageLoader();
+        loader.data = new ImageData[] { data };
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            loader.save(out, this.format);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Render the pages into files named <code>prefix-001.png</code>, <code>prefix-002.png</code>, etc. This function
+     * must be called by the display thread.
+     * 
+     * @param directory
+     *            the destination directory
+     * @param prefix
+     *            the file name prefix
+     * @return the files created
+     * @throws IOException
+     *             if a file can't be written
+     */
+    public File[] export(File directory, String prefix) throws IOException {
+        Display display = Display.getCurrent();
+        if (display == null) {
+            SWT.error(SWT.ERROR_THREAD_INVALID_ACCESS);
+        }
+        List<PrintPiece> pages = layout(display);
+        long start = System.nanoTime();
+        ExecutorService executor = null;
+        try {
+            executor = Executors.newFixedThreadPool(Math.max(1, this.threadCount));
+            List<File> files = new ArrayList<File>(pages.size());
+            List<Future<?>> futures = new ArrayList<Future<?>>(pages.size());
+            int last = Math.min(pages.size(), this.endPage);
+            for (int i = Math.max(0, this.startPage - 1); i < last; i++) {
+                // Wait for the oldest image to be encoded to limit the memory used by the pending images.
+                if (futures.size() >= 2 * this.threadCount) {
+                    waitFor(futures.remove(0));
+                }
+                final ImageData data = render(display, pages.get(i));
+                final File file = new File(directory, String.format("%s-%03d.%s", prefix, Integer.valueOf(i + 1), getExtension(this.format))); //$NON-NLS-1$
+                files.add(file);
+                futures.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        encode(data, file);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                waitFor(future);
+            }
+            return files.toArray(new File[files.size()]);
+        } finally {
+            this.renderTime = System.nanoTime() - start;
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            for (PrintPiece page : pages) {
+                page.dispose();
+            }
+        }
+    }
+
+    /**
+     * Returns the output resolution.
+     * 
+     * @return the resolution in dot per inch
+     */
+    public int getDPI() {
+        return this.dpi;
+    }
+
+    /**
+     * Returns the image format.
+     * 
+     * @return the format
+     */
+    public int getFormat() {
+        return this.format;
+    }
+
+    /**
+     * Returns the time spent to layout the pages by the last export.
+     * 
+     * @return the time in nanoseconds
+     */
+    public long getLayoutTime() {
+        return this.layoutTime;
+    }
+
+    /**
+     * Returns the number of pages laid out by the last export.
+     * 
+     * @return the number of pages
+     */
+    public int getPageCount() {
+        return this.pageCount;
+    }
+
+    /**
+     * Returns the paper size in points, in portrait orientation.
+     * 
+     * @return the paper size
+     */
+    public Point getPaperSize() {
+        return new Point(this.paperSize.x, this.paperSize.y);
+    }
+
+    /**
+     * Returns the print job.
+     * 
+     * @return the print job
+     */
+    public PrintJob getPrintJob() {
+        return this.job;
+    }
+
+    /**
+     * Returns the time spent to render and encode the pages by the last export.
+     * 
+     * @return the time in nanoseconds
+     */
+    public long getRenderTime() {
+        return this.renderTime;
+    }
+
+    /**
+     * Returns the number of threads used to encode the images.
+     * 
+     * @return the number of threads
+     */
+    public int getThreadCount() {
+        return this.threadCount;
+    }
+
+    /**
+     * Layout all the pages on the display. The pages are laid out before being rendered to get the right total number
+     * of pages in the page decorations.
+     * 
+     * @param display
+     *            the display
+     * @return the pages, including the margins
+     */
+    private List<PrintPiece> layout(Display display) {
+        DeviceScale scale = DeviceScale.get(display);
+        Point paper = getOrientedPaperSize();
+        int paperWidth = scale.toPixelsX(paper.x);
+        int paperHeight = scale.toPixelsY(paper.y);
+        Margins margins = this.job.getMargins();
+        int left = scale.toPixelsX(margins.left);
+        int top = scale.toPixelsY(margins.top);
+        int width = paperWidth - left - scale.toPixelsX(margins.right);
+        int height = paperHeight - top - scale.toPixelsY(margins.bottom);
+
+        long start = System.nanoTime();
+        List<PrintPiece> pages = new ArrayList<PrintPiece>();
+        Image image = new Image(display, 1, 1);
+        GC gc = new GC(image);
+        try {
+            PrintIterator iterator = this.job.getPrint().iterator(display, gc);
+            while (iterator.hasNext()) {
+                PrintPiece page = PaperClips.next(iterator, width, height);
+                if (page == null) {
+                    // The remaining content doesn't fit on a page, fail as PaperClips.print() does.
+                    for (PrintPiece p : pages) {
+                        p.dispose();
+                    }
+                    PaperClips.error("Cannot layout page " + (pages.size() + 1) + ": the content is too large to fit on a page"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                pages.add(new TranslatePiece(page, left, top, paperWidth, paperHeight));
+            }
+        } finally {
+            gc.dispose();
+            image.dispose();
+            this.layoutTime = System.nanoTime() - start;
+        }
+        this.pageCount = pages.size();
+        return pages;
+    }
+
+    /**
+     * Returns the paper size according to the job orientation.
+     * 
+     * @return the paper size in points
+     */
+    private Point getOrientedPaperSize() {
+        if (this.job.getOrientation() == PaperClips.ORIENTATION_LANDSCAPE) {
+            return new Point(Math.max(this.paperSize.x, this.paperSize.y), Math.min(this.paperSize.x, this.paperSize.y));
+        }
+        return new Point(Math.min(this.paperSize.x, this.paperSize.y), Math.max(this.paperSize.x, this.paperSize.y));
+    }
+
+    /**
+     * Render the pages in memory. This function must be called by the display thread.
+     * 
+     * @return the image of each page
+     */
+    public ImageData[] render() {
+        Display display = Display.getCurrent();
+        if (display == null) {
+            SWT.error(SWT.ERROR_THREAD_INVALID_ACCESS);
+        }
+        List<PrintPiece> pages = layout(display);
+        long start = System.nanoTime();
+        try {
+            int first = Math.max(0, this.startPage - 1);
+            int last = Math.min(pages.size(), this.endPage);
+            ImageData[] images = new ImageData[Math.max(0, last - first)];
+            for (int i = first; i < last; i++) {
+                images[i - first] = render(display, pages.get(i));
+            }
+            return images;
+        } finally {
+            this.renderTime = System.nanoTime() - start;
+            for (PrintPiece page : pages) {
+                page.dispose();
+            }
+        }
+    }
+
+    /**
+     * Render a single page at the output resolution.
+     * 
+     * @param display
+     *            the display used to layout the page
+     * @param page
+     *            the page
+     * @return the image data
+     */
+    private ImageData render(Display display, PrintPiece page) {
+        Point dpi = DeviceScale.get(display).getDPI();
+        float scaleX = this.dpi / (float) dpi.x;
+        float scaleY = this.dpi / (float) dpi.y;
+        Point size = page.getSize();
+        Image image = new Image(display, Math.max(1, Math.round(size.x * scaleX)), Math.max(1, Math.round(size.y * scaleY)));
+        try {
+            GC gc = new GC(image);
+            Transform transform = new Transform(display);
+            try {
+                gc.setBackground(display.getSystemColor(SWT.COLOR_WHITE));
+                gc.fillRectangle(image.getBounds());
+                transform.scale(scaleX, scaleY);
+                gc.setTransform(transform);
+                page.paint(gc, 0, 0);
+            } finally {
+                transform.dispose();
+                gc.dispose();
+            }
+            return image.getImageData();
+        } finally {
+            image.dispose();
+        }
+    }
+
+    /**
+     * Sets the output resolution. Default is {@link #DEFAULT_DPI}.
+     * 
+     * @param dpi
+     *            the resolution in dot per inch
+     */
+    public void setDPI(int dpi) {
+        if (dpi <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.dpi = dpi;
+    }
+
+    /**
+     * Sets the image format used by {@link #export(File, String)}. Default is {@link SWT#IMAGE_PNG}.
+     * 
+     * @param format
+     *            one of {@link SWT#IMAGE_PNG}, {@link SWT#IMAGE_JPEG} or {@link SWT#IMAGE_BMP}
+     */
+    public void setFormat(int format) {
+        this.format = format;
+    }
+
+    /**
+     * Sets the range of pages to render. All the pages are laid out to get the right total number of pages, but only
+     * the pages within the range are rendered.
+     * 
+     * @param startPage
+     *            the first page (1-based)
+     * @param endPage
+     *            the last page (inclusive)
+     */
+    public void setPageRange(int startPage, int endPage) {
+        if (startPage < 1 || endPage < startPage) {
+            throw new IllegalArgumentException();
+        }
+        this.startPage = startPage;
+        this.endPage = endPage;
+    }
+
+    /**
+     * Sets the paper size. Default is {@link #LETTER}.
+     * 
+     * @param paperSize
+     *            the paper size in points (72 points = 1")
+     */
+    public void setPaperSize(Point paperSize) {
+        if (paperSize == null) {
+            throw new NullPointerException();
+        }
+        this.paperSize = new Point(paperSize.x, paperSize.y);
+    }
+
+    /**
+     * Sets the number of threads used to encode the images. Default is the number of processors.
+     * 
+     * @param threadCount
+     *            the number of threads
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Wait for the image to be encoded.
+     * 
+     * @param future
+     *            the future
+     * @throws IOException
+     *             if the image can't be written
+     */
+    private void waitFor(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e.getMessage());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+}
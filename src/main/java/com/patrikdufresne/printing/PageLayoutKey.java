@@ -0,0 +1,74 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import org.eclipse.nebula.paperclips.core.PaperClips;
+
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.printing.Printer;
+import org.eclipse.swt.printing.PrinterData;
+
+/**
+ * Identify the geometry of a printer used to layout pages: resolution, paper bounds and orientation. Two printers
+ * with the same key produce the same pages, so the pages laid out with one of them may be reused for the other.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+class PageLayoutKey {
+
+    private final int dpiX;
+    private final int dpiY;
+    private final int orientation;
+    private final Rectangle paper;
+
+    /**
+     * Create a key for the given printer.
+     * 
+     * @param printer
+     *            the printer
+     */
+    PageLayoutKey(Printer printer) {
+        Point dpi = DeviceScale.get(printer).getDPI();
+        this.dpiX = dpi.x;
+        this.dpiY = dpi.y;
+        PrinterData data = printer.getPrinterData();
+        this.orientation = data != null ? data.orientation : 0;
+        this.paper = PaperClips.getPaperBounds(printer);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null) return false;
+        if (getClass() != obj.getClass()) return false;
+        PageLayoutKey other = (PageLayoutKey) obj;
+        return this.dpiX == other.dpiX && this.dpiY == other.dpiY && this.orientation == other.orientation && this.paper.equals(other.paper);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + this.dpiX;
+        result = prime * result + this.dpiY;
+        result = prime * result + this.orientation;
+        result = prime * result + this.paper.hashCode();
+        return result;
+    }
+
+}
@@ -0,0 +1,757 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import org.eclipse.nebula.paperclips.core.PaperClips;
+import org.eclipse.nebula.paperclips.core.PrintJob;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.printing.Printer;
+import org.eclipse.swt.printing.PrinterData;
+import org.eclipse.swt.widgets.Canvas;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+
+/**
+ * Widget displaying a single page of a {@link PrintJob}.
+ * <p>
+ * With lazy page layout, only the page displayed and a small look-ahead window of pages following it are laid out.
+ * The remaining pages are laid out by the main thread in small time slices when it's idle, so the pages are laid out
+ * only once and no native call is made by another thread. Listeners of {@link SWT#Modify} are notified when pages are
+ * laid out in the background and when the total number of pages is known.
+ * <p>
+ * The pages are rendered into a cache of images. The pages around the displayed page are rendered ahead of time by the
+ * main thread, one page per idle slice, so flipping pages only draw an image.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class PagePreview extends Canvas {
+
+    /**
+     * Space around the page in pixels.
+     */
+    private static final int BORDER = 10;
+
+    /**
+     * Minimum scale when fitting the page.
+     */
+    private static final float MIN_SCALE = 0.01f;
+
+    /**
+     * Time spent laying out pages per idle slice of the main thread in nanoseconds: 20 ms.
+     */
+    private static final long LAYOUT_SLICE = 20L * 1000000;
+
+    /**
+     * Default memory budget of the page image cache: 32 MiB.
+     */
+    public static final long DEFAULT_IMAGE_CACHE_SIZE = 32L * 1024 * 1024;
+
+    /**
+     * True to render the neighbouring pages one at a time when the main thread is idle.
+     */
+    private boolean backgroundRendering = true;
+
+    /**
+     * True if the page size must fit the width.
+     */
+    private boolean fitHorizontal = true;
+
+    /**
+     * True if the page size must fit the height.
+     */
+    private boolean fitVertical = true;
+
+    /**
+     * Incremented every time the layout is reset. Used to stop the idle layout of stale pages.
+     */
+    private int generation;
+
+    /**
+     * The print job to preview.
+     */
+    private PrintJob job;
+
+    /**
+     * Cache of the rendered pages.
+     */
+    private PageImageCache imageCache = new PageImageCache(DEFAULT_IMAGE_CACHE_SIZE);
+
+    /**
+     * True to layout the pages on demand.
+     */
+    private boolean lazyPageLayout = true;
+
+    /**
+     * The pages laid out by printer geometry. Used to switch back to a previous printer data without laying out the
+     * pages again.
+     */
+    private PaginationCache paginationCache = new PaginationCache();
+
+    /**
+     * True if the pagination cache is owned by this widget.
+     */
+    private boolean ownPaginationCache = true;
+
+    /**
+     * Number of pages laid out ahead of the displayed page.
+     */
+    private int lookAhead = 1;
+
+    /**
+     * Total number of pages or -1 if not known.
+     */
+    private int pageCount = -1;
+
+    /**
+     * The displayed page index.
+     */
+    private int pageIndex;
+
+    /**
+     * The pages laid out so far.
+     */
+    private PrintPages pages;
+
+    /**
+     * The printer data.
+     */
+    private PrinterData printerData;
+
+    /**
+     * True if a call to {@link #renderPending()} is scheduled.
+     */
+    private boolean renderScheduled;
+
+    /**
+     * The scale when not fitting.
+     */
+    private float scale = 1;
+
+    /**
+     * Create a new page preview.
+     * 
+     * @param parent
+     *            the parent composite
+     * @param style
+     *            the widget style
+     */
+    public PagePreview(Composite parent, int style) {
+        super(parent, style | SWT.DOUBLE_BUFFERED);
+        setBackground(getDisplay().getSystemColor(SWT.COLOR_DARK_GRAY));
+        Listener listener = new Listener() {
+            public void handleEvent(Event event) {
+                switch (event.type) {
+                case SWT.Paint:
+                    paint(event.gc);
+                    break;
+                case SWT.Dispose:
+                    resetLayout();
+                    imageCache.clear();
+                    if (ownPaginationCache) {
+                        paginationCache.dispose();
+                    }
+                    break;
+                }
+            }
+        };
+        addListener(SWT.Paint, listener);
+        addListener(SWT.Dispose, listener);
+    }
+
+    /**
+     * Update the total number of pages if the layout is completed.
+     */
+    private void checkPageCount() {
+        if (this.pageCount < 0 && this.pages != null && this.pages.getTotalPageCount() >= 0) {
+            this.pageCount = this.pages.getTotalPageCount();
+            notifyListeners(SWT.Modify, new Event());
+        }
+    }
+
+    @Override
+    public Point computeSize(int wHint, int hHint, boolean changed) {
+        checkWidget();
+        PrintPages pages = getPages();
+        if (pages == null) {
+            return new Point(wHint != SWT.DEFAULT ? wHint : 2 * BORDER, hHint != SWT.DEFAULT ? hHint : 2 * BORDER);
+        }
+        Point size = getPaperSize(computeScale(wHint, hHint));
+        return new Point(wHint != SWT.DEFAULT ? wHint : size.x + 2 * BORDER, hHint != SWT.DEFAULT ? hHint : size.y + 2 * BORDER);
+    }
+
+    /**
+     * Compute the scale to fit the page into the given area.
+     * 
+     * @param width
+     *            the available width or SWT.DEFAULT
+     * @param height
+     *            the available height or SWT.DEFAULT
+     * @return the scale
+     */
+    private float computeScale(int width, int height) {
+        PrintPages pages = getPages();
+        if (pages == null) {
+            return this.scale;
+        }
+        Point size = getPaperSize(1);
+        float result = Float.MAX_VALUE;
+        boolean fit = false;
+        if (this.fitHorizontal && width != SWT.DEFAULT) {
+            result = Math.min(result, (width - 2 * BORDER) / (float) size.x);
+            fit = true;
+        }
+        if (this.fitVertical && height != SWT.DEFAULT) {
+            result = Math.min(result, (height - 2 * BORDER) / (float) size.y);
+            fit = true;
+        }
+        return fit ? Math.max(MIN_SCALE, result) : this.scale;
+    }
+
+    /**
+     * Returns the scale used to display the page. If fitting the page, the scale is computed from the widget size.
+     * 
+     * @return the scale
+     */
+    public float getAbsoluteScale() {
+        checkWidget();
+        Rectangle client = getClientArea();
+        return computeScale(client.width, client.height);
+    }
+
+    /**
+     * Returns the memory budget of the page image cache.
+     * 
+     * @return the size in bytes
+     */
+    public long getImageCacheSize() {
+        return this.imageCache.getMaxSize();
+    }
+
+    /**
+     * Returns the cache of the pages laid out.
+     * 
+     * @return the pagination cache
+     */
+    public PaginationCache getPaginationCache() {
+        return this.paginationCache;
+    }
+
+    /**
+     * Returns the number of pages ahead of the displayed page to be laid out.
+     * 
+     * @return the number of pages
+     */
+    public int getLookAhead() {
+        return this.lookAhead;
+    }
+
+    /**
+     * Returns the bounds of the paper within this widget.
+     * 
+     * @return the bounds
+     */
+    protected Rectangle getPageBounds() {
+        Point size = getPaperSize(getAbsoluteScale());
+        Rectangle client = getClientArea();
+        int x = Math.max(BORDER, (client.width - size.x) / 2);
+        int y = Math.max(BORDER, (client.height - size.y) / 2);
+        return new Rectangle(x, y, size.x, size.y);
+    }
+
+    /**
+     * Returns the number of pages. If the total number of pages is not known yet, returns the number of pages laid out
+     * so far.
+     * 
+     * @return the number of pages
+     * @see #isPageCountKnown()
+     */
+    public int getPageCount() {
+        checkWidget();
+        if (this.pageCount >= 0) {
+            return this.pageCount;
+        }
+        return this.pages != null ? this.pages.getPageCount() : 0;
+    }
+
+    /**
+     * Returns the displayed page index.
+     * 
+     * @return the page index
+     */
+    public int getPageIndex() {
+        return this.pageIndex;
+    }
+
+    /**
+     * Returns the pages. Create them if required. If the pages were already laid out for a printer with the same
+     * geometry, they are reused.
+     * 
+     * @return the pages or null if the print job or the printer data is not set
+     */
+    protected PrintPages getPages() {
+        if (this.pages == null && this.job != null && this.printerData != null && !isDisposed()) {
+            this.pages = this.paginationCache.getPages(this.job, this.printerData);
+            if (this.lazyPageLayout) {
+                if (!this.pages.layoutTo(this.pageIndex)) {
+                    this.pageIndex = Math.max(0, this.pages.getPageCount() - 1);
+                }
+                this.pages.layoutTo(this.pageIndex + this.lookAhead);
+                if (this.pages.getTotalPageCount() < 0) {
+                    startIdleLayout();
+                }
+            } else {
+                this.pages.layoutTo(Integer.MAX_VALUE - 1);
+                this.pageIndex = Math.min(this.pageIndex, Math.max(0, this.pages.getPageCount() - 1));
+            }
+            checkPageCount();
+        }
+        return this.pages;
+    }
+
+    /**
+     * Returns the paper size in pixels for the given scale.
+     * 
+     * @param scale
+     *            the scale
+     * @return the paper size
+     */
+    private Point getPaperSize(float scale) {
+        Printer printer = getPages().getPrinter();
+        Rectangle paper = PaperClips.getPaperBounds(printer);
+        Point printerDPI = DeviceScale.get(printer).getDPI();
+        Point displayDPI = DeviceScale.get(getDisplay()).getDPI();
+        return new Point(Math.round(paper.width * scale * displayDPI.x / printerDPI.x), Math.round(paper.height
+                * scale
+                * displayDPI.y
+                / printerDPI.y));
+    }
+
+    /**
+     * Returns the printer data.
+     * 
+     * @return the printer data
+     */
+    public PrinterData getPrinterData() {
+        return this.printerData;
+    }
+
+    /**
+     * Returns the print job.
+     * 
+     * @return the print job
+     */
+    public PrintJob getPrintJob() {
+        return this.job;
+    }
+
+    /**
+     * Returns the scale used when not fitting the page.
+     * 
+     * @return the scale
+     */
+    public float getScale() {
+        return this.scale;
+    }
+
+    /**
+     * Check if the neighbouring pages are rendered one at a time when the main thread is idle.
+     * 
+     * @return True if rendered in background
+     */
+    public boolean isBackgroundRendering() {
+        return this.backgroundRendering;
+    }
+
+    /**
+     * Check if the page is fit horizontally.
+     * 
+     * @return True if fit horizontally
+     */
+    public boolean isFitHorizontal() {
+        return this.fitHorizontal;
+    }
+
+    /**
+     * Check if the page is fit vertically.
+     * 
+     * @return True if fit vertically
+     */
+    public boolean isFitVertical() {
+        return this.fitVertical;
+    }
+
+    /**
+     * Check if the pages are laid out on demand.
+     * 
+     * @return True if lazy
+     */
+    public boolean isLazyPageLayout() {
+        return this.lazyPageLayout;
+    }
+
+    /**
+     * Check if the total number of pages is known.
+     * 
+     * @return True if the total number of pages is known
+     */
+    public boolean isPageCountKnown() {
+        checkWidget();
+        return this.pageCount >= 0;
+    }
+
+    /**
+     * Paint the displayed page. The page is drawn from the image cache. If the page is not cached at the current scale,
+     * an image of another scale is stretched and the page is rendered later.
+     * 
+     * @param gc
+     *            the graphic context
+     */
+    private void paint(GC gc) {
+        PrintPages pages = getPages();
+        if (pages == null) {
+            return;
+        }
+        Rectangle bounds = getPageBounds();
+        gc.setForeground(getDisplay().getSystemColor(SWT.COLOR_BLACK));
+        gc.drawRectangle(bounds.x - 1, bounds.y - 1, bounds.width + 1, bounds.height + 1);
+        if (!pages.layoutTo(this.pageIndex)) {
+            gc.setBackground(getDisplay().getSystemColor(SWT.COLOR_WHITE));
+            gc.fillRectangle(bounds);
+        } else if (this.imageCache.getMaxSize() <= 0) {
+            gc.setBackground(getDisplay().getSystemColor(SWT.COLOR_WHITE));
+            gc.fillRectangle(bounds);
+            PageRenderer.paintPage(gc, pages.getPage(this.pageIndex), pages.getPrinter(), bounds);
+        } else {
+            float scale = getAbsoluteScale();
+            Image image = this.imageCache.get(pages, this.pageIndex, scale);
+            if (image == null) {
+                image = this.imageCache.find(pages, this.pageIndex);
+                if (image != null) {
+                    // Stretch the image of another scale while zooming.
+                    Rectangle size = image.getBounds();
+                    gc.drawImage(image, 0, 0, size.width, size.height, bounds.x, bounds.y, bounds.width, bounds.height);
+                } else {
+                    image = renderPage(pages, this.pageIndex, scale, bounds);
+                    gc.drawImage(image, bounds.x, bounds.y);
+                }
+            } else {
+                gc.drawImage(image, bounds.x, bounds.y);
+            }
+            scheduleRender();
+        }
+        checkPageCount();
+    }
+
+    /**
+     * Render the displayed page at the current scale if required and prefetch the neighbouring pages. Called
+     * asynchronously by the main thread, after the pending paint events. With background rendering, a single page is
+     * rendered per call and the next call is scheduled, so the user interface stays responsive.
+     */
+    private void renderPending() {
+        this.renderScheduled = false;
+        PrintPages pages = this.pages;
+        if (isDisposed() || pages == null || this.imageCache.getMaxSize() <= 0) {
+            return;
+        }
+        float scale = getAbsoluteScale();
+        Rectangle bounds = getPageBounds();
+        if (this.imageCache.get(pages, this.pageIndex, scale) == null && pages.layoutTo(this.pageIndex)) {
+            renderPage(pages, this.pageIndex, scale, bounds);
+            redraw();
+            if (this.backgroundRendering) {
+                scheduleRender();
+                return;
+            }
+        }
+        // Prefetch the next and previous pages only if they fit in the budget with the displayed page.
+        long pageSize = 4L * bounds.width * bounds.height;
+        if (3 * pageSize > this.imageCache.getMaxSize()) {
+            return;
+        }
+        int[] neighbours = new int[] { this.pageIndex + 1, this.pageIndex - 1 };
+        for (int index : neighbours) {
+            if (index >= 0 && this.imageCache.get(pages, index, scale) == null && pages.layoutTo(index)) {
+                renderPage(pages, index, scale, bounds);
+                if (this.backgroundRendering) {
+                    // Render the next page after the pending events.
+                    scheduleRender();
+                    break;
+                }
+            }
+        }
+        // Mark the displayed page as the most recently used.
+        this.imageCache.get(pages, this.pageIndex, scale);
+        checkPageCount();
+    }
+
+    /**
+     * Render a page and add it to the cache.
+     * 
+     * @param pages
+     *            the pages
+     * @param index
+     *            the page index
+     * @param scale
+     *            the scale
+     * @param bounds
+     *            the page bounds
+     * @return the image
+     */
+    private Image renderPage(PrintPages pages, int index, float scale, Rectangle bounds) {
+        Image image = PageRenderer.renderPage(getDisplay(), pages.getPage(index), pages.getPrinter(), bounds.width, bounds.height);
+        this.imageCache.put(pages, index, scale, image);
+        return image;
+    }
+
+    /**
+     * Cancel the page counter and dispose all the layouts of the print job.
+     */
+    private void reset() {
+        resetLayout();
+        if (this.job != null) {
+            this.paginationCache.remove(this.job);
+        }
+        this.imageCache.clear();
+    }
+
+    /**
+     * Cancel the page counter and release the current layout. The layout is kept to be reused if the printer geometry
+     * is set back.
+     */
+    private void resetLayout() {
+        this.generation++;
+        this.pages = null;
+        this.pageCount = -1;
+    }
+
+    /**
+     * Sets whether the neighbouring pages are rendered one at a time when the main thread is idle. When disabled, the
+     * neighbouring pages are rendered with the displayed page. The pages are always rendered by the main thread from
+     * the pages already laid out.
+     * 
+     * @param backgroundRendering
+     *            True to render in background
+     */
+    public void setBackgroundRendering(boolean backgroundRendering) {
+        checkWidget();
+        this.backgroundRendering = backgroundRendering;
+    }
+
+    /**
+     * Sets whether the page should fit the widget width.
+     * 
+     * @param fitHorizontal
+     *            True to fit
+     */
+    public void setFitHorizontal(boolean fitHorizontal) {
+        checkWidget();
+        this.fitHorizontal = fitHorizontal;
+        redraw();
+    }
+
+    /**
+     * Sets whether the page should fit the widget height.
+     * 
+     * @param fitVertical
+     *            True to fit
+     */
+    public void setFitVertical(boolean fitVertical) {
+        checkWidget();
+        this.fitVertical = fitVertical;
+        redraw();
+    }
+
+    /**
+     * Sets the memory budget of the page image cache. The rendered pages are kept in memory to speed up page flips and
+     * zooming. A value of 0 disable the cache and the page is painted directly.
+     * 
+     * @param size
+     *            the size in bytes
+     */
+    public void setImageCacheSize(long size) {
+        checkWidget();
+        this.imageCache.setMaxSize(Math.max(0, size));
+        if (size <= 0) {
+            this.imageCache.clear();
+        }
+        redraw();
+    }
+
+    /**
+     * Sets whether the pages are laid out on demand. When false, all the pages are laid out the first time the preview
+     * is displayed.
+     * 
+     * @param lazyPageLayout
+     *            True to layout the pages on demand
+     */
+    public void setLazyPageLayout(boolean lazyPageLayout) {
+        checkWidget();
+        if (this.lazyPageLayout != lazyPageLayout) {
+            this.lazyPageLayout = lazyPageLayout;
+            reset();
+            redraw();
+        }
+    }
+
+    /**
+     * Sets the number of pages ahead of the displayed page to be laid out.
+     * 
+     * @param lookAhead
+     *            the number of pages
+     */
+    public void setLookAhead(int lookAhead) {
+        this.lookAhead = Math.max(0, lookAhead);
+    }
+
+    /**
+     * Sets the cache of the pages laid out. Used to share the pages with other components, e.g.: to print the pages
+     * displayed without laying them out again. A shared cache is not disposed with this widget.
+     * 
+     * @param paginationCache
+     *            the pagination cache
+     */
+    public void setPaginationCache(PaginationCache paginationCache) {
+        checkWidget();
+        if (paginationCache == null) {
+            throw new NullPointerException();
+        }
+        if (this.paginationCache == paginationCache) {
+            return;
+        }
+        resetLayout();
+        this.imageCache.clear();
+        if (this.ownPaginationCache) {
+            this.paginationCache.dispose();
+        }
+        this.paginationCache = paginationCache;
+        this.ownPaginationCache = false;
+        redraw();
+    }
+
+    /**
+     * Sets the displayed page index. The index is adjusted if the document has less pages.
+     * 
+     * @param pageIndex
+     *            the page index
+     */
+    public void setPageIndex(int pageIndex) {
+        checkWidget();
+        pageIndex = Math.max(0, pageIndex);
+        PrintPages pages = getPages();
+        if (pages != null) {
+            if (!pages.layoutTo(pageIndex)) {
+                pageIndex = Math.max(0, pages.getPageCount() - 1);
+            }
+            pages.layoutTo(pageIndex + this.lookAhead);
+            checkPageCount();
+        }
+        this.pageIndex = pageIndex;
+        redraw();
+    }
+
+    /**
+     * Sets the printer data used to layout the pages. The pages laid out for the previous printer data are kept and
+     * reused when the printer data has the same geometry (resolution, paper size and orientation).
+     * 
+     * @param printerData
+     *            the printer data
+     */
+    public void setPrinterData(PrinterData printerData) {
+        checkWidget();
+        this.printerData = printerData;
+        resetLayout();
+        redraw();
+    }
+
+    /**
+     * Sets the print job to preview.
+     * 
+     * @param job
+     *            the print job
+     */
+    public void setPrintJob(PrintJob job) {
+        checkWidget();
+        // Dispose the layouts of the previous job.
+        reset();
+        this.job = job;
+        this.pageIndex = 0;
+        redraw();
+    }
+
+    /**
+     * Sets the scale used when not fitting the page.
+     * 
+     * @param scale
+     *            the scale
+     */
+    public void setScale(float scale) {
+        checkWidget();
+        this.scale = scale;
+        redraw();
+    }
+
+    /**
+     * Schedule a call to {@link #renderPending()} if not already scheduled.
+     */
+    private void scheduleRender() {
+        if (!this.renderScheduled) {
+            this.renderScheduled = true;
+            getDisplay().asyncExec(new Runnable() {
+                public void run() {
+                    renderPending();
+                }
+            });
+        }
+    }
+
+    /**
+     * Lay out the remaining pages by small time slices when the main thread is idle. The pages are laid out once, by
+     * the main thread, and the total number of pages is known when the layout is completed.
+     */
+    private void startIdleLayout() {
+        final PrintPages pages = this.pages;
+        final int generation = this.generation;
+        getDisplay().asyncExec(new Runnable() {
+            public void run() {
+                if (isDisposed() || generation != PagePreview.this.generation) {
+                    // The layout was reset.
+                    return;
+                }
+                int count = pages.getPageCount();
+                long end = System.nanoTime() + LAYOUT_SLICE;
+                while (!pages.isComplete() && System.nanoTime() < end) {
+                    pages.layoutTo(pages.getPageCount());
+                }
+                if (pages.isComplete()) {
+                    checkPageCount();
+                } else {
+                    if (pages.getPageCount() > count) {
+                        notifyListeners(SWT.Modify, new Event());
+                    }
+                    getDisplay().asyncExec(this);
+                }
+            }
+        });
+    }
+
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import org.eclipse.nebula.paperclips.core.PaperClips;
+import org.eclipse.nebula.paperclips.core.PrintPiece;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Device;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.graphics.Transform;
+
+/**
+ * This utility class paint pages laid out for a printer on another device (e.g.: the display) at a different
+ * resolution.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class PageRenderer {
+
+    /**
+     * Paint the given page within the bounds. The page is scaled to fit the bounds.
+     * 
+     * @param gc
+     *            the graphic context
+     * @param page
+     *            the page to paint
+     * @param layoutDevice
+     *            the device used to layout the page
+     * @param bounds
+     *            the paper bounds in the graphic context
+     */
+    public static void paintPage(GC gc, PrintPiece page, Device layoutDevice, Rectangle bounds) {
+        Rectangle paper = PaperClips.getPaperBounds(layoutDevice);
+        Transform transform = new Transform(gc.getDevice());
+        try {
+            transform.translate(bounds.x, bounds.y);
+            transform.scale(bounds.width / (float) paper.width, bounds.height / (float) paper.height);
+            gc.setClipping(bounds);
+            gc.setTransform(transform);
+            page.paint(gc, -paper.x, -paper.y);
+        } finally {
+            gc.setTransform(null);
+            gc.setClipping((Rectangle) null);
+            transform.dispose();
+        }
+    }
+
+    /**
+     * Render the given page into a new image of the given size. The caller is responsible to dispose the image.
+     * 
+     * @param device
+     *            the device used to create the image
+     * @param page
+     *            the page to render
+     * @param layoutDevice
+     *            the device used to layout the page
+     * @param width
+     *            the image width
+     * @param height
+     *            the image height
+     * @return a new image
+     */
+    public static Image renderPage(Device device, PrintPiece page, Device layoutDevice, int width, int height) {
+        Image image = new Image(device, Math.max(1, width), Math.max(1, height));
+        GC gc = new GC(image);
+        try {
+            gc.setBackground(device.getSystemColor(SWT.COLOR_WHITE));
+            gc.fillRectangle(0, 0, width, height);
+            paintPage(gc, page, layoutDevice, new Rectangle(0, 0, width, height));
+        } finally {
+            gc.dispose();
+        }
+        return image;
+    }
+
+    private PageRenderer() {
+        // Utility class
+    }
+}
@@ -0,0 +1,469 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import org.eclipse.nebula.paperclips.core.PaperClips;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.widgets.Canvas;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.ScrollBar;
+
+/**
+ * Widget displaying a vertical strip of page thumbnails for a {@link PagePreview}. Listeners of {@link SWT#Selection}
+ * are notified when a thumbnail is clicked, the page index is available in {@link Event#index}.
+ * <p>
+ * The strip is virtualized: only the rows scrolled into view are painted and the thumbnails are rendered at the
+ * thumbnail size, one per event loop iteration, into a bounded image cache. The pages not laid out yet are displayed
+ * as blank placeholders, so scrolling never lay out pages.
+ * <p>
+ * The strip follows the pages laid out by the preview, including the pages laid out in the background, see
+ * {@link SWT#Modify}. Call {@link #refresh()} when the page index or the layout changes to scroll the selected page into
+ * view.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class PageThumbnails extends Canvas {
+
+    /**
+     * Default memory budget of the thumbnail cache: 4 MiB.
+     */
+    public static final long DEFAULT_IMAGE_CACHE_SIZE = 4L * 1024 * 1024;
+
+    /**
+     * Default thumbnail width in pixels.
+     */
+    public static final int DEFAULT_THUMBNAIL_WIDTH = 96;
+
+    /**
+     * Space around the thumbnails in pixels.
+     */
+    private static final int MARGIN = 6;
+
+    /**
+     * Cache of the rendered thumbnails. The thumbnail width is used as scale.
+     */
+    private PageImageCache imageCache = new PageImageCache(DEFAULT_IMAGE_CACHE_SIZE);
+
+    /**
+     * The pages displayed by the last refresh.
+     */
+    private PrintPages pages;
+
+    /**
+     * The preview.
+     */
+    private PagePreview preview;
+
+    /**
+     * Listener notified by the preview when pages are laid out.
+     */
+    private Listener previewListener = new Listener() {
+        public void handleEvent(Event event) {
+            if (!isDisposed()) {
+                updatePages();
+            }
+        }
+    };
+
+    /**
+     * True if a call to {@link #renderPending()} is scheduled.
+     */
+    private boolean renderScheduled;
+
+    /**
+     * Height of the page number in pixels or -1 if not computed.
+     */
+    private int textHeight = -1;
+
+    /**
+     * The thumbnail width in pixels.
+     */
+    private int thumbnailWidth = DEFAULT_THUMBNAIL_WIDTH;
+
+    /**
+     * Create a new thumbnail strip.
+     * 
+     * @param parent
+     *            the parent composite
+     * @param style
+     *            the widget style
+     */
+    public PageThumbnails(Composite parent, int style) {
+        super(parent, style | SWT.V_SCROLL | SWT.DOUBLE_BUFFERED);
+        setBackground(getDisplay().getSystemColor(SWT.COLOR_DARK_GRAY));
+        Listener listener = new Listener() {
+            public void handleEvent(Event event) {
+                switch (event.type) {
+                case SWT.Paint:
+                    paint(event.gc);
+                    break;
+                case SWT.Resize:
+                    updateScrollBar();
+                    break;
+                case SWT.MouseDown:
+                    if (event.button == 1) {
+                        select(event.y);
+                    }
+                    break;
+                case SWT.Selection:
+                    redraw();
+                    break;
+                case SWT.Dispose:
+                    if (preview != null && !preview.isDisposed()) {
+                        preview.removeListener(SWT.Modify, previewListener);
+                    }
+                    imageCache.clear();
+                    break;
+                }
+            }
+        };
+        addListener(SWT.Paint, listener);
+        addListener(SWT.Resize, listener);
+        addListener(SWT.MouseDown, listener);
+        addListener(SWT.Dispose, listener);
+        getVerticalBar().addListener(SWT.Selection, listener);
+    }
+
+    @Override
+    public Point computeSize(int wHint, int hHint, boolean changed) {
+        checkWidget();
+        int width = this.thumbnailWidth + 2 * MARGIN + getVerticalBar().getSize().x;
+        return new Point(wHint != SWT.DEFAULT ? wHint : width, hHint != SWT.DEFAULT ? hHint : getRowHeight());
+    }
+
+    /**
+     * Returns the memory budget of the thumbnail cache.
+     * 
+     * @return the size in bytes
+     */
+    public long getImageCacheSize() {
+        return this.imageCache.getMaxSize();
+    }
+
+    /**
+     * Returns the number of rows.
+     * 
+     * @return the number of pages of the preview
+     */
+    private int getPageCount() {
+        return this.pages != null && !this.preview.isDisposed() ? this.preview.getPageCount() : 0;
+    }
+
+    /**
+     * Returns the preview.
+     * 
+     * @return the preview or null
+     */
+    public PagePreview getPagePreview() {
+        return this.preview;
+    }
+
+    /**
+     * Returns the row height: the thumbnail, the page number and the margin.
+     * 
+     * @return the height in pixels
+     */
+    private int getRowHeight() {
+        return getThumbnailHeight() + getTextHeight() + 2 * MARGIN;
+    }
+
+    /**
+     * Returns the height of the page number.
+     * 
+     * @return the height in pixels
+     */
+    private int getTextHeight() {
+        if (this.textHeight < 0) {
+            GC gc = new GC(this);
+            try {
+                this.textHeight = gc.getFontMetrics().getHeight();
+            } finally {
+                gc.dispose();
+            }
+        }
+        return this.textHeight;
+    }
+
+    /**
+     * Returns the thumbnail height computed from the paper aspect ratio.
+     * 
+     * @return the height in pixels
+     */
+    private int getThumbnailHeight() {
+        if (this.pages == null) {
+            return Math.round(this.thumbnailWidth * 11 / 8.5f);
+        }
+        Rectangle paper = PaperClips.getPaperBounds(this.pages.getPrinter());
+        return Math.max(1, Math.round(this.thumbnailWidth * paper.height / (float) paper.width));
+    }
+
+    /**
+     * Returns the thumbnail width.
+     * 
+     * @return the width in pixels
+     */
+    public int getThumbnailWidth() {
+        return this.thumbnailWidth;
+    }
+
+    /**
+     * Returns the index of the first row in view.
+     * 
+     * @return the row index
+     */
+    private int getTopIndex() {
+        return getVerticalBar().getSelection() / getRowHeight();
+    }
+
+    /**
+     * Returns the bounds of a thumbnail within this widget.
+     * 
+     * @param index
+     *            the page index
+     * @param rowHeight
+     *            the row height
+     * @return the bounds
+     */
+    private Rectangle getThumbnailBounds(int index, int rowHeight) {
+        Rectangle client = getClientArea();
+        int x = Math.max(MARGIN, (client.width - this.thumbnailWidth) / 2);
+        int y = index * rowHeight - getVerticalBar().getSelection() + MARGIN;
+        return new Rectangle(x, y, this.thumbnailWidth, getThumbnailHeight());
+    }
+
+    /**
+     * Paint the rows in view. The missing thumbnails are drawn as placeholders and rendered later.
+     * 
+     * @param gc
+     *            the graphic context
+     */
+    private void paint(GC gc) {
+        PrintPages pages = this.pages;
+        int count = getPageCount();
+        if (pages == null || count == 0) {
+            return;
+        }
+        Rectangle client = getClientArea();
+        int rowHeight = getRowHeight();
+        int first = getTopIndex();
+        int last = Math.min(count - 1, (getVerticalBar().getSelection() + client.height) / rowHeight);
+        int selected = this.preview.getPageIndex();
+        int laidOut = pages.getPageCount();
+        boolean missing = false;
+        for (int index = first; index <= last; index++) {
+            Rectangle bounds = getThumbnailBounds(index, rowHeight);
+            if (index == selected) {
+                gc.setBackground(getDisplay().getSystemColor(SWT.COLOR_LIST_SELECTION));
+                gc.fillRectangle(bounds.x - MARGIN / 2, bounds.y - MARGIN / 2, bounds.width + MARGIN, bounds.height + MARGIN);
+            }
+            Image image = index < laidOut ? this.imageCache.get(pages, index, this.thumbnailWidth) : null;
+            if (image != null) {
+                gc.drawImage(image, bounds.x, bounds.y);
+            } else {
+                gc.setBackground(getDisplay().getSystemColor(SWT.COLOR_WHITE));
+                gc.fillRectangle(bounds);
+                missing |= index < laidOut;
+            }
+            gc.setForeground(getDisplay().getSystemColor(SWT.COLOR_BLACK));
+            gc.drawRectangle(bounds.x - 1, bounds.y - 1, bounds.width + 1, bounds.height + 1);
+            String text = Integer.toString(index + 1);
+            Point size = gc.textExtent(text);
+            gc.setForeground(getDisplay().getSystemColor(SWT.COLOR_WHITE));
+            gc.drawText(text, bounds.x + (bounds.width - size.x) / 2, bounds.y + bounds.height + MARGIN / 2, true);
+        }
+        if (missing) {
+            scheduleRender();
+        }
+    }
+
+    /**
+     * Update the strip from the preview: number of pages, selected page and layout. Scroll the selected page into
+     * view.
+     */
+    public void refresh() {
+        checkWidget();
+        updatePages();
+        if (this.pages != null) {
+            showPage(this.preview.getPageIndex());
+        }
+        redraw();
+    }
+
+    /**
+     * Render the first missing thumbnail in view and schedule the next one. Called asynchronously by the main thread,
+     * so a long strip doesn't block the user interface.
+     */
+    private void renderPending() {
+        this.renderScheduled = false;
+        PrintPages pages = this.pages;
+        if (isDisposed() || pages == null) {
+            return;
+        }
+        int rowHeight = getRowHeight();
+        int first = getTopIndex();
+        int last = Math.min(Math.min(getPageCount(), pages.getPageCount()) - 1, (getVerticalBar().getSelection() + getClientArea().height)
+                / rowHeight);
+        int height = getThumbnailHeight();
+        for (int index = first; index <= last; index++) {
+            if (this.imageCache.get(pages, index, this.thumbnailWidth) == null) {
+                Image image = PageRenderer.renderPage(getDisplay(), pages.getPage(index), pages.getPrinter(), this.thumbnailWidth, height);
+                this.imageCache.put(pages, index, this.thumbnailWidth, image);
+                Rectangle bounds = getThumbnailBounds(index, rowHeight);
+                redraw(bounds.x, bounds.y, bounds.width, bounds.height, false);
+                // The rows painted will schedule the next one.
+                return;
+            }
+        }
+    }
+
+    /**
+     * Schedule a call to {@link #renderPending()} if not already scheduled.
+     */
+    private void scheduleRender() {
+        if (!this.renderScheduled) {
+            this.renderScheduled = true;
+            getDisplay().asyncExec(new Runnable() {
+                public void run() {
+                    renderPending();
+                }
+            });
+        }
+    }
+
+    /**
+     * Notify the selection listeners with the page index of the row at the given location.
+     * 
+     * @param y
+     *            the location within this widget
+     */
+    private void select(int y) {
+        int index = (y + getVerticalBar().getSelection()) / getRowHeight();
+        if (index < 0 || index >= getPageCount()) {
+            return;
+        }
+        Event event = new Event();
+        event.index = index;
+        notifyListeners(SWT.Selection, event);
+    }
+
+    /**
+     * This implementation updates the row height.
+     */
+    @Override
+    public void setFont(Font font) {
+        super.setFont(font);
+        this.textHeight = -1;
+        updateScrollBar();
+    }
+
+    /**
+     * Sets the memory budget of the thumbnail cache.
+     * 
+     * @param size
+     *            the size in bytes
+     */
+    public void setImageCacheSize(long size) {
+        checkWidget();
+        this.imageCache.setMaxSize(Math.max(0, size));
+        redraw();
+    }
+
+    /**
+     * Sets the preview displaying the pages.
+     * 
+     * @param preview
+     *            the preview
+     */
+    public void setPagePreview(PagePreview preview) {
+        checkWidget();
+        if (preview == null) {
+            throw new NullPointerException();
+        }
+        if (this.preview != null && !this.preview.isDisposed()) {
+            this.preview.removeListener(SWT.Modify, this.previewListener);
+        }
+        this.preview = preview;
+        preview.addListener(SWT.Modify, this.previewListener);
+        refresh();
+    }
+
+    /**
+     * Sets the thumbnail width.
+     * 
+     * @param width
+     *            the width in pixels
+     */
+    public void setThumbnailWidth(int width) {
+        checkWidget();
+        if (this.thumbnailWidth != Math.max(1, width)) {
+            this.thumbnailWidth = Math.max(1, width);
+            this.imageCache.clear();
+            refresh();
+        }
+    }
+
+    /**
+     * Scroll the given page into view.
+     * 
+     * @param index
+     *            the page index
+     */
+    private void showPage(int index) {
+        ScrollBar bar = getVerticalBar();
+        int rowHeight = getRowHeight();
+        int top = index * rowHeight;
+        int height = getClientArea().height;
+        if (top < bar.getSelection()) {
+            bar.setSelection(top);
+        } else if (top + rowHeight > bar.getSelection() + height) {
+            bar.setSelection(top + rowHeight - height);
+        }
+    }
+
+    /**
+     * Update the pages and the number of rows from the preview, without scrolling.
+     */
+    private void updatePages() {
+        PrintPages pages = this.preview != null && !this.preview.isDisposed() ? this.preview.getPages() : null;
+        if (pages != this.pages) {
+            this.imageCache.clear();
+            this.pages = pages;
+        }
+        updateScrollBar();
+    }
+
+    /**
+     * Update the scroll bar range from the number of pages.
+     */
+    private void updateScrollBar() {
+        ScrollBar bar = getVerticalBar();
+        int rowHeight = getRowHeight();
+        int height = Math.max(1, getClientArea().height);
+        int total = Math.max(height, getPageCount() * rowHeight);
+        bar.setValues(Math.min(bar.getSelection(), total - height), 0, total, height, rowHeight, height);
+        redraw();
+    }
+
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.nebula.paperclips.core.Margins;
+import org.eclipse.nebula.paperclips.core.PrintJob;
+
+import org.eclipse.swt.printing.Printer;
+import org.eclipse.swt.printing.PrinterData;
+
+/**
+ * Cache of the pages laid out for a print job. The pages are keyed by the print job identity, its margins and
+ * orientation and by the printer geometry (resolution, paper bounds and orientation). The pages are laid out once at
+ * the printer resolution, the preview scales them to the display.
+ * <p>
+ * The pages are laid out on demand by the callers, see {@link PrintPages}. The least recently used pages are disposed
+ * when the cache is full. This class is thread safe.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class PaginationCache {
+
+    /**
+     * Key of the cached pages.
+     */
+    private static class Key {
+
+        private final PrintJob job;
+        private final PageLayoutKey layout;
+        private final int orientation;
+        private final int top;
+        private final int left;
+        private final int right;
+        private final int bottom;
+
+        Key(PrintJob job, PageLayoutKey layout) {
+            this.job = job;
+            this.layout = layout;
+            this.orientation = job.getOrientation();
+            Margins margins = job.getMargins();
+            this.top = margins.top;
+            this.left = margins.left;
+            this.right = margins.right;
+            this.bottom = margins.bottom;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null) return false;
+            if (getClass() != obj.getClass()) return false;
+            Key other = (Key) obj;
+            return this.job == other.job
+                    && this.layout.equals(other.layout)
+                    && this.orientation == other.orientation
+                    && this.top == other.top
+                    && this.left == other.left
+                    && this.right == other.right
+                    && this.bottom == other.bottom;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + System.identityHashCode(this.job);
+            result = prime * result + this.layout.hashCode();
+            result = prime * result + this.orientation;
+            result = prime * result + this.top;
+            result = prime * result + this.left;
+            result = prime * result + this.right;
+            result = prime * result + this.bottom;
+            return result;
+        }
+    }
+
+    /**
+     * Default maximum number of layouts.
+     */
+    public static final int DEFAULT_MAX_SIZE = 4;
+
+    /**
+     * The cached pages in access order.
+     */
+    private LinkedHashMap<Key, PrintPages> entries = new LinkedHashMap<Key, PrintPages>(16, 0.75f, true);
+
+    /**
+     * Maximum number of layouts.
+     */
+    private int maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * Dispose all the cached pages.
+     */
+    public synchronized void dispose() {
+        for (PrintPages pages : this.entries.values()) {
+            pages.dispose();
+        }
+        this.entries.clear();
+    }
+
+    /**
+     * Dispose the least recently used pages until the cache fit the maximum size. The given pages are kept.
+     * 
+     * @param keep
+     *            the pages to keep
+     */
+    private void evict(PrintPages keep) {
+        Iterator<PrintPages> iter = this.entries.values().iterator();
+        while (this.entries.size() > this.maxSize && iter.hasNext()) {
+            PrintPages pages = iter.next();
+            if (pages != keep) {
+                iter.remove();
+                pages.dispose();
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of layouts.
+     * 
+     * @return the maximum number of layouts
+     */
+    public synchronized int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Returns the pages of the given print job laid out for the given printer data. If the pages were already laid out
+     * for a printer with the same geometry, they are returned. Otherwise, a new {@link PrintPages} is created. This
+     * function should be called by the main thread.
+     * <p>
+     * The returned pages are owned by this cache and must not be disposed by the caller.
+     * 
+     * @param job
+     *            the print job
+     * @param data
+     *            the printer data
+     * @return the pages
+     */
+    public synchronized PrintPages getPages(PrintJob job, PrinterData data) {
+        if (job == null || data == null) {
+            throw new NullPointerException();
+        }
+        Printer printer = new Printer(data);
+        Key key = new Key(job, new PageLayoutKey(printer));
+        PrintPages pages = this.entries.get(key);
+        if (pages != null) {
+            printer.dispose();
+            return pages;
+        }
+        pages = new PrintPages(job, printer);
+        this.entries.put(key, pages);
+        evict(pages);
+        return pages;
+    }
+
+    /**
+     * Returns the pages of the given print job if already laid out for a printer with the same geometry as the given
+     * printer. Unlike {@link #getPages(PrintJob, PrinterData)}, nothing is created if the pages are not cached.
+     * <p>
+     * The returned pages are owned by this cache and must not be disposed by the caller.
+     * 
+     * @param job
+     *            the print job
+     * @param printer
+     *            the printer
+     * @return the pages or null if not cached
+     */
+    public synchronized PrintPages peek(PrintJob job, Printer printer) {
+        if (job == null || printer == null) {
+            throw new NullPointerException();
+        }
+        return this.entries.get(new Key(job, new PageLayoutKey(printer)));
+    }
+
+    /**
+     * Dispose the pages of the given print job.
+     * 
+     * @param job
+     *            the print job
+     */
+    public synchronized void remove(PrintJob job) {
+        List<PrintPages> removed = new ArrayList<PrintPages>();
+        Iterator<Map.Entry<Key, PrintPages>> iter = this.entries.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<Key, PrintPages> e = iter.next();
+            if (e.getKey().job == job) {
+                iter.remove();
+                removed.add(e.getValue());
+            }
+        }
+        for (PrintPages pages : removed) {
+            pages.dispose();
+        }
+    }
+
+    /**
+     * Sets the maximum number of layouts. The least recently used pages are disposed if required.
+     * 
+     * @param maxSize
+     *            the maximum number of layouts
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+        evict(null);
+    }
+
+}
@@ -15,6 +15,7 @@
  */
 package com.patrikdufresne.printing;
 
+import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 
 import org.eclipse.nebula.paperclips.core.PaperClips;
@@ -33,7 +34,9 @@ import org.eclipse.jface.util.Policy;
 import org.eclipse.jface.window.IShellProvider;
 import org.eclipse.jface.window.Window;
 import org.eclipse.swt.printing.PrintDialog;
+import org.eclipse.swt.printing.Printer;
 import org.eclipse.swt.printing.PrinterData;
+import org.eclipse.swt.widgets.Display;
 
 import com.patrikdufresne.util.Localized;
 
@@ -53,11 +56,31 @@ public abstract class PrintAction extends Action {
      */
     protected class PrintPreviewRunnable implements IRunnableWithProgress {
 
+        /**
+         * The print counting its pieces when a metrics listener is set.
+         */
+        private CountingPrint countingPrint;
+
         /** Default printer data */
         private PrinterData data;
 
+        /**
+         * The display used to start the layout in the main thread.
+         */
+        private Display display;
+
         private PrintJob job;
 
+        /**
+         * The pages laid out in background or null.
+         */
+        private PrintPages pages;
+
+        /**
+         * The printer used to layout the pages in background or null.
+         */
+        private Printer printer;
+
         /**
          * Create a new runnable.
          * 
@@ -77,6 +100,31 @@ public abstract class PrintAction extends Action {
             return this.data;
         }
 
+        /**
+         * Release the resources allocated by this runnable. Called when the
+         * runnable failed or was cancelled.
+         */
+        public void dispose() {
+            if (this.printer != null) {
+                DeviceResourcePool.dispose(this.printer);
+                this.printer.dispose();
+                this.printer = null;
+            }
+            if (this.pages != null) {
+                this.pages.dispose();
+                this.pages = null;
+            }
+        }
+
+        /**
+         * Check if this runnable may be cancelled by the user.
+         * 
+         * @return True if the runnable is cancelable
+         */
+        public boolean isCancelable() {
+            return getOperation() == PRINT_ACTION && isLayoutInBackground();
+        }
+
         @Override
         public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
             // Sets process
@@ -86,13 +134,33 @@ public abstract class PrintAction extends Action {
 
             // Query database
             IPrintFactory factory = getPrintFactory();
+            long start = System.nanoTime();
             initFactory(factory);
+            firePhaseCompleted(factory.getName(), IPrintMetricsListener.PHASE_INIT_FACTORY, start);
 
             // Create print
+            start = System.nanoTime();
             Print print = factory.createPrint();
-            this.job = new PrintJob(factory.getName(), print);
-            this.job.setMargins(factory.getMargins());
-            this.job.setOrientation(factory.getOrientation());
+            if (getMetricsListener() != null) {
+                print = this.countingPrint = new CountingPrint(print);
+            }
+            this.job = PrintFactory.createPrintJob(factory, print);
+            firePhaseCompleted(this.job.getName(), IPrintMetricsListener.PHASE_CREATE_PRINT, start);
+
+            // Layout the pages
+            if (this.printer != null) {
+                start = System.nanoTime();
+                final PrintPages pages = this.pages = new PrintPages(this.job, this.printer);
+                this.printer = null;
+                // The GC and the GTK printer job must be created by the main thread.
+                this.display.syncExec(new Runnable() {
+                    public void run() {
+                        pages.start();
+                    }
+                });
+                this.pages.layout(monitor);
+                firePhaseCompleted(this.job.getName(), IPrintMetricsListener.PHASE_PAGINATION, start);
+            }
 
             monitor.subTask(localized.get("PrintAction.task.sendToPrinter")); //$NON-NLS-1$
 
@@ -102,16 +170,62 @@ public abstract class PrintAction extends Action {
         }
 
         public void runAfter() {
-            if (getOperation() == PRINT_ACTION) {
-                PaperClips.print(this.job, getPrinterData());
+            long start = System.nanoTime();
+            if (this.pages != null) {
+                // Only send the pages to the printer.
+                try {
+                    this.pages.print();
+                    firePhaseCompleted(this.job.getName(), IPrintMetricsListener.PHASE_OUTPUT, start);
+                    fireCountRecorded(this.job.getName(), IPrintMetricsListener.COUNT_PAGES, this.pages.getPageCount());
+                } finally {
+                    dispose();
+                }
+            } else if (getOperation() == PRINT_ACTION) {
+                if (isStreamingPrint()) {
+                    StreamingPrinter printer = StreamingPrinter.print(this.job, getPrinterData());
+                    firePhaseCompleted(this.job.getName(), IPrintMetricsListener.PHASE_OUTPUT, start);
+                    fireCountRecorded(this.job.getName(), IPrintMetricsListener.COUNT_PAGES, printer.getPageCount());
+                } else {
+                    // The pagination is included in the output phase.
+                    Printer printer = new Printer(getPrinterData());
+                    try {
+                        PaperClips.print(this.job, printer);
+                    } finally {
+                        DeviceResourcePool.dispose(printer);
+                        printer.dispose();
+                    }
+                    firePhaseCompleted(this.job.getName(), IPrintMetricsListener.PHASE_OUTPUT, start);
+                }
             } else {
                 PrintPreviewDialog dlg = new PrintPreviewDialog(getShellProvider());
+                dlg.setStreamingPrint(isStreamingPrint());
                 dlg.setPrinterData(getPrinterData());
                 dlg.setPrintJob(this.job);
+                dlg.create();
+                firePhaseCompleted(this.job.getName(), IPrintMetricsListener.PHASE_PREVIEW, start);
                 if (dlg.open() == Window.OK) {
                     savePref(dlg.getPrinterData());
                 }
             }
+            if (this.countingPrint != null) {
+                fireCountRecorded(this.job.getName(), IPrintMetricsListener.COUNT_ROOT_PIECES, this.countingPrint.getPieceCount());
+                fireCountRecorded(this.job.getName(), IPrintMetricsListener.COUNT_ROOT_ITERATOR_COPIES, this.countingPrint.getCopyCount());
+            }
+            PrinterData data = getPrinterData();
+            if (getOperation() == PRINT_ACTION && data != null && data.printToFile && data.fileName != null) {
+                fireCountRecorded(this.job.getName(), IPrintMetricsListener.COUNT_BYTES, new File(data.fileName).length());
+            }
+        }
+
+        /**
+         * Called in the main thread before running this runnable. Allocate the
+         * printer when the pages need to be laid out in background.
+         */
+        public void runBefore() {
+            if (isCancelable()) {
+                this.display = Display.getCurrent();
+                this.printer = new Printer(getPrinterData());
+            }
         }
     }
 
@@ -131,11 +245,27 @@ public abstract class PrintAction extends Action {
      * The print factory
      */
     private IPrintFactory factory;
+
+    /**
+     * True to layout the pages in background.
+     */
+    private boolean layoutInBackground;
+
+    /**
+     * True to send the pages to the printer as they are laid out.
+     */
+    private boolean streamingPrint;
+
     /**
      * Used to localize string.
      */
     private Localized localized = Localized.load(PrintAction.class);
 
+    /**
+     * The listener notified of the time spent in each phase or null.
+     */
+    private volatile IPrintMetricsListener metricsListener;
+
     /**
      * Hold the operation.
      */
@@ -197,6 +327,49 @@ public abstract class PrintAction extends Action {
         this.runnableContext = runnableContext;
     }
 
+    /**
+     * Notify the metrics listener, if any, of a count.
+     * 
+     * @param jobName
+     *            the print job name
+     * @param counter
+     *            the counter name
+     * @param count
+     *            the count
+     */
+    protected void fireCountRecorded(String jobName, String counter, long count) {
+        IPrintMetricsListener listener = this.metricsListener;
+        if (listener != null) {
+            listener.countRecorded(jobName, counter, count);
+        }
+    }
+
+    /**
+     * Notify the metrics listener, if any, that a phase is completed.
+     * 
+     * @param jobName
+     *            the print job name
+     * @param phase
+     *            the phase name
+     * @param start
+     *            the value of {@link System#nanoTime()} when the phase started
+     */
+    protected void firePhaseCompleted(String jobName, String phase, long start) {
+        IPrintMetricsListener listener = this.metricsListener;
+        if (listener != null) {
+            listener.phaseCompleted(jobName, phase, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns the listener notified of the time spent in each phase.
+     * 
+     * @return the listener or null if not set
+     */
+    public IPrintMetricsListener getMetricsListener() {
+        return this.metricsListener;
+    }
+
     /**
      * Return the operation run by this action.
      * 
@@ -257,7 +430,8 @@ public abstract class PrintAction extends Action {
      * a Print object. Sub-class may implement this function to sets factory
      * data.
      * <p>
-     * This function is not called by the main Thread.
+     * This function is not called by the main Thread when a runnable context
+     * is set.
      * 
      * @param factory
      *            the factory
@@ -275,6 +449,26 @@ public abstract class PrintAction extends Action {
         // Implemented by sub-class
     }
 
+    /**
+     * Check if the pages are laid out in background.
+     * 
+     * @return True if the pages are laid out in background
+     * @see #setLayoutInBackground(boolean)
+     */
+    public boolean isLayoutInBackground() {
+        return this.layoutInBackground;
+    }
+
+    /**
+     * Check if the pages are sent to the printer as they are laid out.
+     * 
+     * @return True if streaming is enabled
+     * @see #setStreamingPrint(boolean)
+     */
+    public boolean isStreamingPrint() {
+        return this.streamingPrint;
+    }
+
     /**
      * Load the Printer data from preference store if available.
      * 
@@ -317,6 +511,54 @@ public abstract class PrintAction extends Action {
 
     }
 
+    /**
+     * Write the Print object into a file without opening any dialog. The
+     * factory is initialized and the print is created by the runnable context,
+     * as for {@link #print()}, then the pages are written by the main thread as
+     * they are laid out. Without runnable context, the factory is initialized
+     * by the main thread and the user interface is blocked. Used for
+     * unattended printing. This function must be called by the main thread.
+     * 
+     * @param fileName
+     *            the file name
+     * @return the streaming printer used, to get the number of pages and the
+     *         throughput
+     * @throws InvocationTargetException
+     *             if the factory initialization failed
+     * @throws InterruptedException
+     *             if the factory initialization was cancelled
+     */
+    public StreamingPrinter printToFile(String fileName) throws InvocationTargetException, InterruptedException {
+        if (fileName == null) {
+            throw new NullPointerException();
+        }
+        final PrintJob[] job = new PrintJob[1];
+        IRunnableWithProgress runnable = new IRunnableWithProgress() {
+            public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
+                monitor.beginTask(localized.get("PrintAction.task.preparePrinting"), IProgressMonitor.UNKNOWN); //$NON-NLS-1$
+                IPrintFactory factory = getPrintFactory();
+                long start = System.nanoTime();
+                initFactory(factory);
+                firePhaseCompleted(factory.getName(), IPrintMetricsListener.PHASE_INIT_FACTORY, start);
+                start = System.nanoTime();
+                job[0] = PrintFactory.createPrintJob(factory);
+                firePhaseCompleted(job[0].getName(), IPrintMetricsListener.PHASE_CREATE_PRINT, start);
+                monitor.done();
+            }
+        };
+        if (this.runnableContext != null) {
+            this.runnableContext.run(true, true, runnable);
+        } else {
+            runnable.run(new NullProgressMonitor());
+        }
+        long start = System.nanoTime();
+        StreamingPrinter printer = StreamingPrinter.printToFile(job[0], fileName);
+        firePhaseCompleted(job[0].getName(), IPrintMetricsListener.PHASE_OUTPUT, start);
+        fireCountRecorded(job[0].getName(), IPrintMetricsListener.COUNT_PAGES, printer.getPageCount());
+        fireCountRecorded(job[0].getName(), IPrintMetricsListener.COUNT_BYTES, new File(fileName).length());
+        return printer;
+    }
+
     /**
      * This implementation print or preview the print
      */
@@ -342,12 +584,14 @@ public abstract class PrintAction extends Action {
     protected void runWithRunnableContext(PrintPreviewRunnable runnable) {
         // Run the Runnable - Run the printing
         try {
+            runnable.runBefore();
             if (this.runnableContext != null) {
-                this.runnableContext.run(true, false, runnable);
+                this.runnableContext.run(true, runnable.isCancelable(), runnable);
             } else {
                 runnable.run(new NullProgressMonitor());
             }
         } catch (InvocationTargetException e) {
+            runnable.dispose();
             Policy.getStatusHandler().show(
                     new Status(IStatus.ERROR, Policy.JFACE, getOperation() == PRINT_ACTION
                             ? this.localized.get("PrintAction.printErrorMessage")
@@ -356,6 +600,7 @@ public abstract class PrintAction extends Action {
             return;
         } catch (InterruptedException e) {
             // Nothing to do, the opperation was cancel by user
+            runnable.dispose();
             return;
         }
 
@@ -372,6 +617,31 @@ public abstract class PrintAction extends Action {
         }
     }
 
+    /**
+     * Sets whether the pages should be laid out in background when printing.
+     * When enabled, the whole document is paginated by the runnable context
+     * with per-page progress and the operation may be cancelled by the user.
+     * The main thread is only used to send the finished pages to the printer.
+     * 
+     * @param layoutInBackground
+     *            True to layout the pages in background
+     */
+    public void setLayoutInBackground(boolean layoutInBackground) {
+        this.layoutInBackground = layoutInBackground;
+    }
+
+    /**
+     * Sets the listener notified of the time spent in each phase: factory initialization, print creation, pagination
+     * and output. The listener may be called by the thread running the operation. Setting a listener doesn't change how
+     * the job is printed: when the pages are not laid out in background, the pagination is timed within the output.
+     * 
+     * @param metricsListener
+     *            the listener or null to unset
+     */
+    public void setMetricsListener(IPrintMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
     /**
      * Sets the preference store to use to save the printer settings selected by
      * the user.
@@ -393,6 +663,19 @@ public abstract class PrintAction extends Action {
         this.prefKey = prefKey;
     }
 
+    /**
+     * Sets whether the pages should be sent to the printer as they are laid
+     * out using a {@link StreamingPrinter}. Only one page is kept in memory at
+     * a time. This setting is ignored when the pages are laid out in
+     * background.
+     * 
+     * @param streamingPrint
+     *            True to enable streaming
+     */
+    public void setStreamingPrint(boolean streamingPrint) {
+        this.streamingPrint = streamingPrint;
+    }
+
     /**
      * Sets the runnable context to used while printing.
      * 
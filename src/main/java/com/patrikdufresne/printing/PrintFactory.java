@@ -17,6 +17,8 @@ package com.patrikdufresne.printing;
 
 import org.eclipse.nebula.paperclips.core.Margins;
 import org.eclipse.nebula.paperclips.core.PaperClips;
+import org.eclipse.nebula.paperclips.core.Print;
+import org.eclipse.nebula.paperclips.core.PrintJob;
 
 /**
  * This class is used to easily implement a printing.
@@ -28,6 +30,37 @@ import org.eclipse.nebula.paperclips.core.PaperClips;
  * 
  */
 public abstract class PrintFactory implements IPrintFactory {
+
+    /**
+     * Create a print job using the given factory: name, print, margins and
+     * orientation.
+     * 
+     * @param factory
+     *            the factory
+     * @return a new print job
+     */
+    public static PrintJob createPrintJob(IPrintFactory factory) {
+        return createPrintJob(factory, factory.createPrint());
+    }
+
+    /**
+     * Create a print job for the given print using the settings of the given
+     * factory: name, margins and orientation. Used when the print created by
+     * the factory is wrapped.
+     * 
+     * @param factory
+     *            the factory
+     * @param print
+     *            the print created by the factory
+     * @return a new print job
+     */
+    public static PrintJob createPrintJob(IPrintFactory factory, Print print) {
+        PrintJob job = new PrintJob(factory.getName(), print);
+        job.setMargins(factory.getMargins());
+        job.setOrientation(factory.getOrientation());
+        return job;
+    }
+
     /**
      * The job's name.
      */
@@ -42,6 +75,11 @@ public abstract class PrintFactory implements IPrintFactory {
      */
     private int orientation;
 
+    /**
+     * The cache of the static fragments.
+     */
+    private PrintTemplateCache templateCache = PrintTemplateCache.getDefault();
+
     /**
      * Create a new Print factory.
      * 
@@ -77,6 +115,40 @@ public abstract class PrintFactory implements IPrintFactory {
         return this.orientation;
     }
 
+    /**
+     * Returns the cache used to keep the static fragments.
+     * 
+     * @return the template cache
+     */
+    public PrintTemplateCache getTemplateCache() {
+        return this.templateCache;
+    }
+
+    /**
+     * Returns a static fragment of the report (letterhead, column headers,
+     * etc.) from the template cache or create it with the given builder. Used
+     * by sub-classes in {@link #createPrint()} to avoid rebuilding the same
+     * fragments on every call.
+     * <p>
+     * The name is qualified with the class name of this factory, e.g.:
+     * <code>com.example.InvoiceFactory:header</code>, so unrelated factories
+     * using the same name don't share their templates.
+     * 
+     * @param builder
+     *            the builder used if the template is not cached
+     * @param name
+     *            the template name
+     * @param parameters
+     *            the template parameters
+     * @return the template
+     */
+    protected Print getTemplate(IPrintTemplateBuilder builder, String name, Object... parameters) {
+        if (name == null) {
+            throw new NullPointerException();
+        }
+        return this.templateCache.getTemplate(builder, getClass().getName() + ':' + name, parameters);
+    }
+
     /**
      * Sets the name of the print job, which will appear in the print queue of
      * the operating system.
@@ -118,4 +190,18 @@ public abstract class PrintFactory implements IPrintFactory {
         this.orientation = orientation;
     }
 
+    /**
+     * Sets the cache used to keep the static fragments. By default, the cache
+     * shared by all the factories is used.
+     * 
+     * @param templateCache
+     *            the template cache
+     */
+    public void setTemplateCache(PrintTemplateCache templateCache) {
+        if (templateCache == null) {
+            throw new NullPointerException();
+        }
+        this.templateCache = templateCache;
+    }
+
 }
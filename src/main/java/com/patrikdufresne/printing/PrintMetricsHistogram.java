@@ -0,0 +1,331 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Metrics listener aggregating the time spent per print job and per phase into histograms kept in memory. The counts
+ * are summed per print job and per counter.
+ * <p>
+ * The histograms use buckets of exponential size in milliseconds: the bucket <i>i</i> count the times lower than
+ * 2<sup><i>i</i></sup> ms, the last bucket count the longer times.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class PrintMetricsHistogram implements IPrintMetricsListener {
+
+    /**
+     * Histogram of the time spent in a phase.
+     * 
+     * @author Patrik Dufresne
+     * 
+     */
+    public static class Histogram {
+
+        /**
+         * The number of times in each bucket.
+         */
+        private long[] buckets = new long[BUCKET_COUNT];
+
+        /**
+         * Number of times recorded.
+         */
+        private long count;
+
+        /**
+         * The longest time in nanoseconds.
+         */
+        private long max;
+
+        /**
+         * The shortest time in nanoseconds.
+         */
+        private long min = Long.MAX_VALUE;
+
+        /**
+         * The total time in nanoseconds.
+         */
+        private long total;
+
+        /**
+         * Create a copy of the given histogram.
+         * 
+         * @param that
+         *            the histogram to copy
+         */
+        Histogram(Histogram that) {
+            this.buckets = that.buckets.clone();
+            this.count = that.count;
+            this.max = that.max;
+            this.min = that.min;
+            this.total = that.total;
+        }
+
+        /**
+         * Create an empty histogram.
+         */
+        Histogram() {
+            // Nothing to do
+        }
+
+        /**
+         * Add a time to this histogram.
+         * 
+         * @param nanos
+         *            the time in nanoseconds
+         */
+        void add(long nanos) {
+            this.buckets[bucketOf(nanos)]++;
+            this.count++;
+            this.total += nanos;
+            this.min = Math.min(this.min, nanos);
+            this.max = Math.max(this.max, nanos);
+        }
+
+        /**
+         * Returns the number of times in each bucket.
+         * 
+         * @return the bucket counts
+         */
+        public long[] getBuckets() {
+            return this.buckets.clone();
+        }
+
+        /**
+         * Returns the number of times recorded.
+         * 
+         * @return the count
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * Returns the longest time.
+         * 
+         * @return the time in nanoseconds or 0 if empty
+         */
+        public long getMax() {
+            return this.max;
+        }
+
+        /**
+         * Returns the average time.
+         * 
+         * @return the time in nanoseconds or 0 if empty
+         */
+        public long getMean() {
+            return this.count == 0 ? 0 : this.total / this.count;
+        }
+
+        /**
+         * Returns the shortest time.
+         * 
+         * @return the time in nanoseconds or 0 if empty
+         */
+        public long getMin() {
+            return this.count == 0 ? 0 : this.min;
+        }
+
+        /**
+         * Returns an upper bound of the given percentile. The value is the upper limit of the bucket containing the
+         * percentile, bounded by the longest time.
+         * 
+         * @param percentile
+         *            the percentile between 0 and 100
+         * @return the time in nanoseconds or 0 if empty
+         */
+        public long getPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException();
+            }
+            long rank = (long) Math.ceil(this.count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+                seen += this.buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(this.max, (1L << i) * NANOS_PER_MILLI);
+                }
+            }
+            return this.max;
+        }
+
+        /**
+         * Returns the total time.
+         * 
+         * @return the time in nanoseconds
+         */
+        public long getTotal() {
+            return this.total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%dms p95<=%dms max=%dms", //$NON-NLS-1$
+                    Long.valueOf(this.count), Long.valueOf(getMean() / NANOS_PER_MILLI), Long.valueOf(getPercentile(95) / NANOS_PER_MILLI),
+                    Long.valueOf(this.max / NANOS_PER_MILLI));
+        }
+    }
+
+    /**
+     * Number of buckets. The last bucket count the times longer than 2<sup>16</sup> ms (about a minute).
+     */
+    public static final int BUCKET_COUNT = 18;
+
+    /**
+     * Number of nanoseconds per millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Returns the bucket index of the given time.
+     * 
+     * @param nanos
+     *            the time in nanoseconds
+     * @return the bucket index
+     */
+    static int bucketOf(long nanos) {
+        long millis = nanos / NANOS_PER_MILLI;
+        int i = 0;
+        while (i < BUCKET_COUNT - 1 && millis >= (1L << i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the key used for a job name. Null is not supported by the maps.
+     * 
+     * @param jobName
+     *            the job name or null
+     * @return the key
+     */
+    private static String key(String jobName) {
+        return jobName != null ? jobName : ""; //$NON-NLS-1$
+    }
+
+    /**
+     * The counts per job name and counter.
+     */
+    private Map<String, Map<String, Long>> counts = new TreeMap<String, Map<String, Long>>();
+
+    /**
+     * The histograms per job name and phase.
+     */
+    private Map<String, Map<String, Histogram>> histograms = new TreeMap<String, Map<String, Histogram>>();
+
+    /**
+     * Remove all the recorded values.
+     */
+    public synchronized void clear() {
+        this.counts.clear();
+        this.histograms.clear();
+    }
+
+    @Override
+    public synchronized void countRecorded(String jobName, String counter, long count) {
+        Map<String, Long> map = this.counts.get(key(jobName));
+        if (map == null) {
+            this.counts.put(key(jobName), map = new TreeMap<String, Long>());
+        }
+        Long value = map.get(counter);
+        map.put(counter, Long.valueOf(value != null ? value.longValue() + count : count));
+    }
+
+    /**
+     * Returns the sum of the counts recorded for the given job and counter.
+     * 
+     * @param jobName
+     *            the job name
+     * @param counter
+     *            the counter name
+     * @return the sum
+     */
+    public synchronized long getCount(String jobName, String counter) {
+        Map<String, Long> map = this.counts.get(key(jobName));
+        Long value = map != null ? map.get(counter) : null;
+        return value != null ? value.longValue() : 0;
+    }
+
+    /**
+     * Returns a copy of the histogram of the given job and phase.
+     * 
+     * @param jobName
+     *            the job name
+     * @param phase
+     *            the phase name
+     * @return the histogram or null if nothing was recorded
+     */
+    public synchronized Histogram getHistogram(String jobName, String phase) {
+        Map<String, Histogram> map = this.histograms.get(key(jobName));
+        Histogram histogram = map != null ? map.get(phase) : null;
+        return histogram != null ? new Histogram(histogram) : null;
+    }
+
+    /**
+     * Returns the names of the jobs with recorded values.
+     * 
+     * @return the job names
+     */
+    public synchronized Set<String> getJobNames() {
+        Set<String> names = new TreeSet<String>(this.histograms.keySet());
+        names.addAll(this.counts.keySet());
+        return Collections.unmodifiableSet(names);
+    }
+
+    @Override
+    public synchronized void phaseCompleted(String jobName, String phase, long nanos) {
+        Map<String, Histogram> map = this.histograms.get(key(jobName));
+        if (map == null) {
+            this.histograms.put(key(jobName), map = new TreeMap<String, Histogram>());
+        }
+        Histogram histogram = map.get(phase);
+        if (histogram == null) {
+            map.put(phase, histogram = new Histogram());
+        }
+        histogram.add(nanos);
+    }
+
+    /**
+     * Returns a report of the recorded values, one line per job and phase or counter.
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder buf = new StringBuilder();
+        for (String jobName : getJobNames()) {
+            Map<String, Histogram> map = this.histograms.get(jobName);
+            if (map != null) {
+                for (Map.Entry<String, Histogram> e : map.entrySet()) {
+                    buf.append(jobName).append(' ').append(e.getKey()).append(": ").append(e.getValue()).append('\n'); //$NON-NLS-1$
+                }
+            }
+            Map<String, Long> counts = this.counts.get(jobName);
+            if (counts != null) {
+                for (Map.Entry<String, Long> e : counts.entrySet()) {
+                    buf.append(jobName).append(' ').append(e.getKey()).append(": ").append(e.getValue()).append('\n'); //$NON-NLS-1$
+                }
+            }
+        }
+        return buf.toString();
+    }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Metrics listener writing the time spent in each phase and the counts to a {@link Logger}. The phases taking longer
+ * than the warning threshold are logged with the {@link Level#WARNING} level, the others with the {@link Level#FINE}
+ * level.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class PrintMetricsLogger implements IPrintMetricsListener {
+
+    /**
+     * The default logger name.
+     */
+    public static final String DEFAULT_LOGGER_NAME = "com.patrikdufresne.printing.metrics"; //$NON-NLS-1$
+
+    /**
+     * Number of nanoseconds per millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * The logger.
+     */
+    private Logger logger;
+
+    /**
+     * The warning threshold in milliseconds or 0 to disable.
+     */
+    private volatile long warningThreshold;
+
+    /**
+     * Create a new listener using the default logger.
+     */
+    public PrintMetricsLogger() {
+        this(Logger.getLogger(DEFAULT_LOGGER_NAME));
+    }
+
+    /**
+     * Create a new listener.
+     * 
+     * @param logger
+     *            the logger
+     */
+    public PrintMetricsLogger(Logger logger) {
+        if (logger == null) {
+            throw new NullPointerException();
+        }
+        this.logger = logger;
+    }
+
+    @Override
+    public void countRecorded(String jobName, String counter, long count) {
+        if (this.logger.isLoggable(Level.FINE)) {
+            this.logger.fine(String.format("%s: %s %d", jobName, counter, Long.valueOf(count))); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Returns the logger.
+     * 
+     * @return the logger
+     */
+    public Logger getLogger() {
+        return this.logger;
+    }
+
+    /**
+     * Returns the warning threshold.
+     * 
+     * @return the time in milliseconds or 0 if disabled
+     */
+    public long getWarningThreshold() {
+        return this.warningThreshold;
+    }
+
+    @Override
+    public void phaseCompleted(String jobName, String phase, long nanos) {
+        long millis = nanos / NANOS_PER_MILLI;
+        Level level = this.warningThreshold > 0 && millis > this.warningThreshold ? Level.WARNING : Level.FINE;
+        if (this.logger.isLoggable(level)) {
+            this.logger.log(level, String.format("%s: %s %d ms", jobName, phase, Long.valueOf(millis))); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Sets the time above which a phase is logged as a warning. e.g.: the time allowed to display a preview.
+     * 
+     * @param warningThreshold
+     *            the time in milliseconds or 0 to disable
+     */
+    public void setWarningThreshold(long warningThreshold) {
+        this.warningThreshold = warningThreshold;
+    }
+
+}
@@ -0,0 +1,372 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.nebula.paperclips.core.PageEnumeration;
+import org.eclipse.nebula.paperclips.core.PaperClips;
+import org.eclipse.nebula.paperclips.core.PrintJob;
+import org.eclipse.nebula.paperclips.core.PrintPiece;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.printing.Printer;
+import org.eclipse.swt.printing.PrinterData;
+
+import com.patrikdufresne.util.Localized;
+
+/**
+ * Instances of this class hold the pages of a {@link PrintJob} laid out for a specific printer.
+ * <p>
+ * The pages are laid out one at a time by {@link #layout(IProgressMonitor)}. This function doesn't required the main
+ * thread, which make it possible to paginate a large document in a worker thread and only send the finished pages to
+ * the printer with {@link #print()}. The graphic context used to layout the pages, and on GTK the printer job, should
+ * be created by the main thread with {@link #start()} before handing this object to the worker thread. The layout
+ * itself still measures the text on the printer graphic context, which is not guaranteed to be safe off the main
+ * thread on GTK.
+ * <p>
+ * If the content is too large to fit on a page, the layout fails with an {@link org.eclipse.swt.SWTException} as
+ * {@link PaperClips#print(PrintJob, Printer)} does and the printer job is cancelled.
+ * <p>
+ * The printer used to create this object is owned by it and get disposed with {@link #dispose()}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class PrintPages {
+
+    /**
+     * Return true if running on GTK. On GTK, a GC is not available on a printer until a job is started.
+     * 
+     * @return True if GTK
+     */
+    private static boolean isGTK() {
+        return "gtk".equals(SWT.getPlatform()); //$NON-NLS-1$
+    }
+
+    /**
+     * Raise the error of a page too large to be laid out.
+     * 
+     * @param index
+     *            the page index
+     */
+    private static void error(int index) {
+        PaperClips.error("Cannot layout page " + (index + 1) + ": the content is too large to fit on a page"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * The GC used to layout the pages.
+     */
+    private GC gc;
+
+    /**
+     * The page enumeration used to layout the remaining pages.
+     */
+    private PageEnumeration enumeration;
+
+    /**
+     * The print job.
+     */
+    private PrintJob job;
+
+    /**
+     * True if the printer job is started.
+     */
+    private boolean jobStarted;
+
+    /**
+     * The pages laid out so far.
+     */
+    private List<PrintPiece> pages = new ArrayList<PrintPiece>();
+
+    /**
+     * The printer device.
+     */
+    private Printer printer;
+
+    /**
+     * Create a new object to layout the given print job. A new Printer is created for the printer data. This
+     * constructor should be called by the main thread.
+     * 
+     * @param job
+     *            the print job to layout
+     * @param data
+     *            the printer data
+     */
+    public PrintPages(PrintJob job, PrinterData data) {
+        this(job, new Printer(data));
+    }
+
+    /**
+     * Create a new object to layout the given print job with the given printer. The printer is disposed with this
+     * object.
+     * 
+     * @param job
+     *            the print job to layout
+     * @param printer
+     *            the printer
+     */
+    public PrintPages(PrintJob job, Printer printer) {
+        if (job == null || printer == null) {
+            throw new NullPointerException();
+        }
+        this.job = job;
+        this.printer = printer;
+    }
+
+    /**
+     * Dispose the pages and the printer. If the pages were not printed, the printer job is cancelled.
+     */
+    public synchronized void dispose() {
+        for (PrintPiece page : this.pages) {
+            page.dispose();
+        }
+        this.pages.clear();
+        this.enumeration = null;
+        if (this.gc != null) {
+            this.gc.dispose();
+            this.gc = null;
+        }
+        if (this.jobStarted) {
+            this.printer.cancelJob();
+            this.jobStarted = false;
+        }
+        if (!this.printer.isDisposed()) {
+            DeviceResourcePool.dispose(this.printer);
+            this.printer.dispose();
+        }
+    }
+
+    /**
+     * Returns the page at the given index.
+     * 
+     * @param index
+     *            the page index
+     * @return the page
+     */
+    public synchronized PrintPiece getPage(int index) {
+        return this.pages.get(index);
+    }
+
+    /**
+     * Returns the number of pages laid out so far.
+     * 
+     * @return the number of pages
+     */
+    public synchronized int getPageCount() {
+        return this.pages.size();
+    }
+
+    /**
+     * Returns the total number of pages if known. The total is known when all the pages are laid out.
+     * 
+     * @return the total number of pages or -1 if not known
+     */
+    public synchronized int getTotalPageCount() {
+        return isComplete() ? this.pages.size() : -1;
+    }
+
+    /**
+     * Returns the printer used to layout the pages.
+     * 
+     * @return the printer
+     */
+    public Printer getPrinter() {
+        return this.printer;
+    }
+
+    /**
+     * Returns the print job.
+     * 
+     * @return the print job
+     */
+    public PrintJob getPrintJob() {
+        return this.job;
+    }
+
+    /**
+     * Check if all the pages are laid out.
+     * 
+     * @return True if all the pages are laid out
+     */
+    public synchronized boolean isComplete() {
+        return this.enumeration != null && !this.enumeration.hasNext();
+    }
+
+    /**
+     * Layout all the remaining pages. The progress is reported page per page to the given monitor. This function may be
+     * called by a thread other than the main thread.
+     * 
+     * @param monitor
+     *            the progress monitor
+     * @throws InterruptedException
+     *             if the monitor is cancelled
+     */
+    public void layout(IProgressMonitor monitor) throws InterruptedException {
+        while (!isComplete()) {
+            if (monitor.isCanceled()) {
+                throw new InterruptedException();
+            }
+            if (layoutNext()) {
+                monitor.subTask(Localized.format(PrintPages.class, "PrintPages.task.layoutPage", //$NON-NLS-1$
+                        Integer.valueOf(getPageCount())));
+                monitor.worked(1);
+            }
+        }
+    }
+
+    /**
+     * Layout the pages up to the given index. Used to layout the pages on demand.
+     * 
+     * @param index
+     *            the page index
+     * @return True if the page is available. False if the document has less pages.
+     */
+    public synchronized boolean layoutTo(int index) {
+        while (this.pages.size() <= index && !isComplete()) {
+            layoutNext();
+        }
+        return index < this.pages.size();
+    }
+
+    /**
+     * Layout the next page.
+     * 
+     * @return True if a new page was added
+     */
+    protected synchronized boolean layoutNext() {
+        if (this.enumeration == null) {
+            start();
+            this.enumeration = PaperClips.getPageEnumeration(this.job, this.printer, this.gc);
+        }
+        if (!this.enumeration.hasNext()) {
+            return false;
+        }
+        PrintPiece page = this.enumeration.nextPage();
+        if (page == null) {
+            // The layout can't go further, fail as PaperClips.print() does.
+            if (this.jobStarted) {
+                this.printer.cancelJob();
+                this.jobStarted = false;
+            }
+            error(this.pages.size());
+        }
+        this.pages.add(page);
+        return true;
+    }
+
+    /**
+     * Send the pages laid out to the printer. If the layout is not completed, the remaining pages are laid out first.
+     * The page range of the printer data is honoured.
+     */
+    public synchronized void print() {
+        while (!isComplete()) {
+            layoutNext();
+        }
+        if (!this.jobStarted) {
+            startJob();
+        }
+        printPages(this.printer, this.gc);
+        this.printer.endJob();
+        this.jobStarted = false;
+    }
+
+    /**
+     * Send the pages to another printer. The printer should have the same geometry (resolution and paper bounds) as the
+     * printer used to layout the pages, e.g.: the same printer model. If the layout is not completed, the remaining
+     * pages are laid out first. The page range of the printer data is honoured.
+     * 
+     * @param target
+     *            the printer
+     */
+    public synchronized void print(Printer target) {
+        if (target == this.printer) {
+            print();
+            return;
+        }
+        while (!isComplete()) {
+            layoutNext();
+        }
+        if (!target.startJob(this.job.getName())) {
+            SWT.error(SWT.ERROR_NO_HANDLES);
+        }
+        boolean completed = false;
+        GC gc = new GC(target);
+        try {
+            printPages(target, gc);
+            target.endJob();
+            completed = true;
+        } finally {
+            gc.dispose();
+            if (!completed) {
+                target.cancelJob();
+            }
+        }
+    }
+
+    /**
+     * Paint the pages within the page range of the printer.
+     * 
+     * @param target
+     *            the printer
+     * @param gc
+     *            the printer graphic context
+     */
+    private void printPages(Printer target, GC gc) {
+        PrinterData data = target.getPrinterData();
+        int start = 0;
+        int end = this.pages.size() - 1;
+        if (data != null && data.scope == PrinterData.PAGE_RANGE) {
+            start = Math.max(start, data.startPage - 1);
+            end = Math.min(end, data.endPage - 1);
+        }
+        for (int i = start; i <= end; i++) {
+            if (target.startPage()) {
+                this.pages.get(i).paint(gc, 0, 0);
+                target.endPage();
+            }
+        }
+    }
+
+    /**
+     * Create the graphic context used to layout the pages. On GTK, a GC is not available on a printer until a job is
+     * started, so the printer job is started too. Should be called by the main thread before calling
+     * {@link #layout(IProgressMonitor)} from another thread. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (this.gc != null) {
+            return;
+        }
+        if (isGTK()) {
+            startJob();
+        }
+        this.gc = new GC(this.printer);
+    }
+
+    /**
+     * Start the printer job.
+     */
+    private void startJob() {
+        if (!this.printer.startJob(this.job.getName())) {
+            SWT.error(SWT.ERROR_NO_HANDLES);
+        }
+        this.jobStarted = true;
+    }
+
+}
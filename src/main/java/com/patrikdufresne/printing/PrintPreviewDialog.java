@@ -240,7 +240,7 @@ public class PrintPreviewDialog extends TrayDialog {
 
         @Override
         public void run() {
-            setPreviewPageIndex(preview.getPageIndex() + preview.getHorizontalPageCount() * preview.getVerticalPageCount());
+            setPreviewPageIndex(getPreviewPageIndex() + getPreviewPageStep());
             updatePreviousNextAction();
         }
     };
@@ -270,7 +270,7 @@ public class PrintPreviewDialog extends TrayDialog {
 
         @Override
         public void run() {
-            setPreviewPageIndex(preview.getPageIndex() - preview.getHorizontalPageCount() * preview.getVerticalPageCount());
+            setPreviewPageIndex(getPreviewPageIndex() - getPreviewPageStep());
             updatePreviousNextAction();
         }
     };
@@ -295,7 +295,7 @@ public class PrintPreviewDialog extends TrayDialog {
             }
 
             // Send the PrintJob to the printer
-            PaperClips.print(job, data);
+            print(data);
 
             // Close the preview
             setReturnCode(Window.OK);
@@ -328,7 +328,7 @@ public class PrintPreviewDialog extends TrayDialog {
             // preview.setPrinterData(data);
 
             // Send the PrintJob to the printer
-            PaperClips.print(job, newData);
+            print(newData);
 
             // Close the preview
             setReturnCode(Window.OK);
@@ -341,8 +341,7 @@ public class PrintPreviewDialog extends TrayDialog {
             .getDescriptor(ICON_ZOOM_FIT_BEST_16)) {
         @Override
         public void run() {
-            preview.setFitVertical(true);
-            preview.setFitHorizontal(true);
+            setPreviewFit(true);
             updatePreviewSize();
         }
     };
@@ -352,7 +351,7 @@ public class PrintPreviewDialog extends TrayDialog {
             .getDescriptor(ICON_ZOOM_IN_16)) {
         @Override
         public void run() {
-            setPreviewScale(preview.getAbsoluteScale() * 1.1f);
+            setPreviewScale(getPreviewAbsoluteScale() * 1.1f);
         }
     };
 
@@ -370,7 +369,7 @@ public class PrintPreviewDialog extends TrayDialog {
             .getDescriptor(ICON_ZOOM_OUT_16)) {
         @Override
         public void run() {
-            setPreviewScale(preview.getAbsoluteScale() / 1.1f);
+            setPreviewScale(getPreviewAbsoluteScale() / 1.1f);
         }
     };
 
@@ -392,12 +391,42 @@ public class PrintPreviewDialog extends TrayDialog {
     protected Label pageNumber;
 
     /**
-     * Composite displaying the preview of a page.
+     * Widget displaying the preview of a page when the pages are laid out on demand. Null otherwise.
+     */
+    protected PagePreview pagePreview;
+
+    /**
+     * Composite displaying the preview of the pages when the lazy page layout is disabled. Null otherwise.
      */
     protected PrintPreview preview;
 
     private ScrolledComposite scroll;
 
+    /**
+     * The page thumbnails displayed in the left pane.
+     */
+    protected PageThumbnails thumbnails;
+
+    /**
+     * Memory budget of the preview image cache.
+     */
+    private long imageCacheSize = PagePreview.DEFAULT_IMAGE_CACHE_SIZE;
+
+    /**
+     * True to layout the pages on demand.
+     */
+    private boolean lazyPageLayout = true;
+
+    /**
+     * The pages laid out for the preview. Reused to print.
+     */
+    private PaginationCache paginationCache = new PaginationCache();
+
+    /**
+     * True to send the pages to the printer as they are laid out.
+     */
+    private boolean streamingPrint;
+
     /**
      * Create a new print preview dialog.
      * 
@@ -420,6 +449,18 @@ public class PrintPreviewDialog extends TrayDialog {
         this.data = getDefaultPrinterData();
     }
 
+    /**
+     * This implementation dispose the pages laid out for the preview.
+     */
+    @Override
+    public boolean close() {
+        boolean closed = super.close();
+        if (closed) {
+            this.paginationCache.dispose();
+        }
+        return closed;
+    }
+
     /**
      * This implementation does nothing to avoid creating buttons bars.
      */
@@ -443,10 +484,18 @@ public class PrintPreviewDialog extends TrayDialog {
         composite.setLayout(new FillLayout());
         composite.setLayoutData(new GridData(GridData.FILL_BOTH));
         createScrollingPreview(composite);
-        this.preview.setPrinterData(this.data);
-        this.preview.setLazyPageLayout(false);
-        if (this.job != null) {
-            this.preview.setPrintJob(this.job);
+        if (this.pagePreview != null) {
+            this.pagePreview.setPrinterData(this.data);
+            this.pagePreview.setImageCacheSize(this.imageCacheSize);
+            if (this.job != null) {
+                this.pagePreview.setPrintJob(this.job);
+            }
+        } else {
+            this.preview.setPrinterData(this.data);
+            this.preview.setLazyPageLayout(false);
+            if (this.job != null) {
+                this.preview.setPrintJob(this.job);
+            }
         }
 
         /*
@@ -487,6 +536,7 @@ public class PrintPreviewDialog extends TrayDialog {
         updatePageNumber();
         updatePreviousNextAction();
         updatePreviewSize();
+        updateThumbnails();
 
         return composite;
     }
@@ -522,6 +572,19 @@ public class PrintPreviewDialog extends TrayDialog {
         this.pageNumber.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
         this.pageNumber.setText(""); //$NON-NLS-1$
 
+        // Thumbnails
+        if (this.pagePreview != null) {
+            this.thumbnails = new PageThumbnails(composite, SWT.BORDER);
+            this.thumbnails.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+            this.thumbnails.setPagePreview(this.pagePreview);
+            this.thumbnails.addListener(SWT.Selection, new Listener() {
+                public void handleEvent(Event event) {
+                    setPreviewPageIndex(event.index);
+                    updatePreviousNextAction();
+                }
+            });
+        }
+
         // Separator
         Label separator;
         separator = new Label(composite, SWT.HORIZONTAL | SWT.SEPARATOR);
@@ -573,8 +636,10 @@ public class PrintPreviewDialog extends TrayDialog {
         separator.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
 
         // Spacer
-        Composite spacer = new Composite(composite, SWT.NONE);
-        spacer.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+        if (this.thumbnails == null) {
+            Composite spacer = new Composite(composite, SWT.NONE);
+            spacer.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+        }
 
         /*
          * Button bars
@@ -609,12 +674,27 @@ public class PrintPreviewDialog extends TrayDialog {
         this.scroll.setExpandHorizontal(true);
         this.scroll.setExpandVertical(true);
 
-        this.preview = new PrintPreview(this.scroll, SWT.NONE);
-        this.scroll.setContent(this.preview);
-
-        this.preview.setFitVertical(false);
-        this.preview.setFitHorizontal(false);
-        this.preview.setScale(1);
+        final Control preview;
+        if (this.lazyPageLayout) {
+            preview = this.pagePreview = new PagePreview(this.scroll, SWT.NONE);
+            this.pagePreview.setPaginationCache(this.paginationCache);
+            this.pagePreview.addListener(SWT.Modify, new Listener() {
+                public void handleEvent(Event event) {
+                    // Pages laid out or total number of pages known. The thumbnails follow the preview.
+                    updatePageNumber();
+                    updatePreviousNextAction();
+                }
+            });
+            this.pagePreview.setFitVertical(false);
+            this.pagePreview.setFitHorizontal(false);
+            this.pagePreview.setScale(1);
+        } else {
+            preview = this.preview = new PrintPreview(this.scroll, SWT.NONE);
+            this.preview.setFitVertical(false);
+            this.preview.setFitHorizontal(false);
+            this.preview.setScale(1);
+        }
+        this.scroll.setContent(preview);
 
         Listener dragListener = new Listener() {
             private final Point dpi = Display.getCurrent().getDPI();
@@ -684,7 +764,7 @@ public class PrintPreviewDialog extends TrayDialog {
                         } else if (event.stateMask == SWT.CTRL) { // Ctrl+MouseWheel
                             // ->
                             // zoom
-                            float scale = preview.getAbsoluteScale();
+                            float scale = getPreviewAbsoluteScale();
                             setPreviewScale(event.count < 0 ? scale / 1.1f : scale * 1.1f);
                         }
                     }
@@ -708,6 +788,15 @@ public class PrintPreviewDialog extends TrayDialog {
         return scroll;
     }
 
+    /**
+     * Returns the memory budget of the preview image cache.
+     * 
+     * @return the size in bytes
+     */
+    public long getImageCacheSize() {
+        return this.imageCacheSize;
+    }
+
     /**
      * Returns the PrinterData used to print the job.
      * 
@@ -717,6 +806,51 @@ public class PrintPreviewDialog extends TrayDialog {
         return this.data;
     }
 
+    /**
+     * Returns the scale used to display the pages by the preview widget.
+     * 
+     * @return the scale
+     */
+    private float getPreviewAbsoluteScale() {
+        return this.pagePreview != null ? this.pagePreview.getAbsoluteScale() : this.preview.getAbsoluteScale();
+    }
+
+    /**
+     * Returns the preview widget: the page preview or the PaperClips preview.
+     * 
+     * @return the widget or null if not created
+     */
+    private Control getPreviewControl() {
+        return this.pagePreview != null ? this.pagePreview : this.preview;
+    }
+
+    /**
+     * Returns the number of pages of the preview widget.
+     * 
+     * @return the number of pages
+     */
+    private int getPreviewPageCount() {
+        return this.pagePreview != null ? this.pagePreview.getPageCount() : this.preview.getPageCount();
+    }
+
+    /**
+     * Returns the first page index displayed by the preview widget.
+     * 
+     * @return the page index
+     */
+    private int getPreviewPageIndex() {
+        return this.pagePreview != null ? this.pagePreview.getPageIndex() : this.preview.getPageIndex();
+    }
+
+    /**
+     * Returns the number of pages displayed at once by the preview widget.
+     * 
+     * @return the number of pages
+     */
+    private int getPreviewPageStep() {
+        return this.pagePreview != null ? 1 : this.preview.getHorizontalPageCount() * this.preview.getVerticalPageCount();
+    }
+
     /**
      * Returns the PrintJob to preview.
      * 
@@ -736,14 +870,104 @@ public class PrintPreviewDialog extends TrayDialog {
         return true;
     }
 
+    /**
+     * Check if the pages are laid out on demand.
+     * 
+     * @return True if the pages are laid out on demand
+     */
+    public boolean isLazyPageLayout() {
+        return this.lazyPageLayout;
+    }
+
+    /**
+     * Check if the total number of pages is known by the preview widget.
+     * 
+     * @return True if known
+     */
+    private boolean isPreviewPageCountKnown() {
+        return this.pagePreview != null ? this.pagePreview.isPageCountKnown() : true;
+    }
+
+    /**
+     * Check if the pages are sent to the printer as they are laid out.
+     * 
+     * @return True if streaming is enabled
+     */
+    public boolean isStreamingPrint() {
+        return this.streamingPrint;
+    }
+
+    /**
+     * Used by actions to send the print job to the printer. When the pages
+     * were already laid out by the preview for the same printer geometry, they
+     * are printed without laying them out again. Otherwise, the print job is
+     * laid out and printed on the printer.
+     * 
+     * @param data
+     *            the printer data
+     */
+    protected void print(PrinterData data) {
+        if (this.streamingPrint) {
+            StreamingPrinter.print(this.job, data);
+            return;
+        }
+        Printer printer = new Printer(data);
+        try {
+            PrintPages pages = this.paginationCache.peek(this.job, printer);
+            if (pages != null) {
+                pages.print(printer);
+            } else {
+                PaperClips.print(this.job, printer);
+            }
+        } finally {
+            DeviceResourcePool.dispose(printer);
+            printer.dispose();
+        }
+    }
+
     /**
      * Used by actions to set the page index to be view.
      * 
      * @param pageIndex
      */
     protected void setPreviewPageIndex(int pageIndex) {
-        this.preview.setPageIndex(Math.max(Math.min(pageIndex, this.preview.getPageCount() - 1), 0));
+        if (this.pagePreview != null) {
+            // The preview adjust the page index if the document has less pages.
+            this.pagePreview.setPageIndex(Math.max(pageIndex, 0));
+        } else {
+            this.preview.setPageIndex(Math.max(Math.min(pageIndex, this.preview.getPageCount() - 1), 0));
+        }
         updatePageNumber();
+        updateThumbnails();
+    }
+
+    /**
+     * Sets the memory budget of the preview image cache. The rendered pages are kept to speed up page flips and
+     * zooming. A value of 0 disable the cache.
+     * 
+     * @param size
+     *            the size in bytes
+     */
+    public void setImageCacheSize(long size) {
+        this.imageCacheSize = size;
+        if (this.pagePreview != null && !this.pagePreview.isDisposed()) {
+            this.pagePreview.setImageCacheSize(size);
+        }
+    }
+
+    /**
+     * Sets whether the pages are laid out on demand. When true, the pages are displayed one at a time by a
+     * {@link PagePreview}: only the displayed page and a few pages following it are laid out while the remaining pages
+     * are laid out when the main thread is idle. When false, all the pages are laid out before being displayed by the
+     * PaperClips {@link PrintPreview} available in {@link #preview}. Default is true.
+     * <p>
+     * Must be called before the dialog is created.
+     * 
+     * @param lazyPageLayout
+     *            True to layout the pages on demand
+     */
+    public void setLazyPageLayout(boolean lazyPageLayout) {
+        this.lazyPageLayout = lazyPageLayout;
     }
 
     /**
@@ -752,12 +976,31 @@ public class PrintPreviewDialog extends TrayDialog {
      * @param scale
      */
     protected void setPreviewScale(float scale) {
-        this.preview.setFitVertical(false);
-        this.preview.setFitHorizontal(false);
-        this.preview.setScale(scale);
+        setPreviewFit(false);
+        if (this.pagePreview != null) {
+            this.pagePreview.setScale(scale);
+        } else {
+            this.preview.setScale(scale);
+        }
         updatePreviewSize();
     }
 
+    /**
+     * Sets whether the pages fit the width and the height of the preview widget.
+     * 
+     * @param fit
+     *            True to fit
+     */
+    private void setPreviewFit(boolean fit) {
+        if (this.pagePreview != null) {
+            this.pagePreview.setFitVertical(fit);
+            this.pagePreview.setFitHorizontal(fit);
+        } else {
+            this.preview.setFitVertical(fit);
+            this.preview.setFitHorizontal(fit);
+        }
+    }
+
     /**
      * Sets the PrinterData used to print the job.
      * 
@@ -770,7 +1013,9 @@ public class PrintPreviewDialog extends TrayDialog {
         } else {
             this.data = data;
         }
-        if (this.preview != null && !this.preview.isDisposed()) {
+        if (this.pagePreview != null && !this.pagePreview.isDisposed()) {
+            this.pagePreview.setPrinterData(data);
+        } else if (this.preview != null && !this.preview.isDisposed()) {
             this.preview.setPrinterData(data);
         }
         updateOrientation();
@@ -778,6 +1023,7 @@ public class PrintPreviewDialog extends TrayDialog {
         updatePageNumber();
         updatePreviewSize();
         updatePreviousNextAction();
+        updateThumbnails();
     }
 
     /**
@@ -792,6 +1038,16 @@ public class PrintPreviewDialog extends TrayDialog {
         updateShellTitle();
     }
 
+    /**
+     * Sets whether the pages should be sent to the printer as they are laid out using a {@link StreamingPrinter}.
+     * 
+     * @param streamingPrint
+     *            True to enable streaming
+     */
+    public void setStreamingPrint(boolean streamingPrint) {
+        this.streamingPrint = streamingPrint;
+    }
+
     /**
      * Update the orientation widgets.
      */
@@ -808,15 +1064,18 @@ public class PrintPreviewDialog extends TrayDialog {
     }
 
     /**
-     * Update the page counter label : 1 of 10
+     * Update the page counter label: 1 of 10. While the total number of pages is computed, the label display the
+     * number of pages laid out so far: 1 of &ge;3
      */
     protected void updatePageNumber() {
-        if (this.preview == null || this.pageNumber == null || this.preview.isDisposed() || this.pageNumber.isDisposed()) {
+        if (getPreviewControl() == null || this.pageNumber == null || getPreviewControl().isDisposed() || this.pageNumber.isDisposed()) {
             return;
         }
-        int pageIndex = this.preview.getPageIndex();
-        int pageCount = this.preview.getPageCount();
-        String text = Localized.format(PrintPreviewDialog.class, "PrintPreviewDialog.pageOfPages", //$NON-NLS-1$
+        int pageIndex = getPreviewPageIndex();
+        int pageCount = getPreviewPageCount();
+        String text = Localized.format(PrintPreviewDialog.class, isPreviewPageCountKnown()
+                ? "PrintPreviewDialog.pageOfPages" //$NON-NLS-1$
+                : "PrintPreviewDialog.pageOfAtLeastPages", //$NON-NLS-1$
                 Integer.valueOf(pageIndex + 1),
                 Integer.valueOf(pageCount));
         this.pageNumber.setText(text);
@@ -826,17 +1085,20 @@ public class PrintPreviewDialog extends TrayDialog {
      * Update the preview size
      */
     protected void updatePreviewSize() {
-        if (this.preview == null || this.scroll == null || this.preview.isDisposed() || this.scroll.isDisposed()) {
+        Control preview = getPreviewControl();
+        if (preview == null || this.scroll == null || preview.isDisposed() || this.scroll.isDisposed()) {
             return;
         }
+        boolean fitHorizontal = this.pagePreview != null ? this.pagePreview.isFitHorizontal() : this.preview.isFitHorizontal();
+        boolean fitVertical = this.pagePreview != null ? this.pagePreview.isFitVertical() : this.preview.isFitVertical();
         Point minSize;
         Rectangle bounds = scroll.getClientArea();
-        if (preview.isFitHorizontal()) {
-            if (preview.isFitVertical()) minSize = new Point(0, 0); // Best fit
+        if (fitHorizontal) {
+            if (fitVertical) minSize = new Point(0, 0); // Best fit
             else
                 minSize = new Point(0, preview.computeSize(bounds.width, SWT.DEFAULT).y); // Fit to width
         } else {
-            if (preview.isFitVertical()) minSize = new Point(preview.computeSize(SWT.DEFAULT, bounds.height).x, 0); // Fit
+            if (fitVertical) minSize = new Point(preview.computeSize(SWT.DEFAULT, bounds.height).x, 0); // Fit
             // to
             // height
             else
@@ -851,13 +1113,13 @@ public class PrintPreviewDialog extends TrayDialog {
      */
     protected void updatePreviousNextAction() {
 
-        if (preview == null || preview.isDisposed() || actionPreviousPage == null || actionNextPage == null) {
+        if (getPreviewControl() == null || getPreviewControl().isDisposed() || actionPreviousPage == null || actionNextPage == null) {
             return;
         }
 
         // Update buttons
-        actionPreviousPage.setEnabled(preview.getPageIndex() > 0);
-        actionNextPage.setEnabled(preview.getPageIndex() + preview.getHorizontalPageCount() * preview.getVerticalPageCount() < preview.getPageCount());
+        actionPreviousPage.setEnabled(getPreviewPageIndex() > 0);
+        actionNextPage.setEnabled(getPreviewPageIndex() + getPreviewPageStep() < getPreviewPageCount() || !isPreviewPageCountKnown());
     }
 
     /**
@@ -876,6 +1138,16 @@ public class PrintPreviewDialog extends TrayDialog {
         }
     }
 
+    /**
+     * Update the thumbnails from the preview: number of pages, selected page and layout.
+     */
+    protected void updateThumbnails() {
+        if (this.thumbnails == null || this.thumbnails.isDisposed()) {
+            return;
+        }
+        this.thumbnails.refresh();
+    }
+
     /**
      * Update the shell title using the job's name.
      */
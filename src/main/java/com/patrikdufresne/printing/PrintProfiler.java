@@ -0,0 +1,389 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.nebula.paperclips.core.AlignPrint;
+import org.eclipse.nebula.paperclips.core.Print;
+import org.eclipse.nebula.paperclips.core.SeriesPrint;
+import org.eclipse.nebula.paperclips.core.border.BorderPrint;
+
+import org.eclipse.swt.graphics.Point;
+
+/**
+ * Layout diagnostic tool. The prints wrapped by a profiler record how often the <code>minimumSize</code>,
+ * <code>preferredSize</code>, <code>next</code> and <code>copy</code> functions of their iterators are called and the
+ * time spent in each. The report list the nodes by time spent in the node itself, excluding the wrapped children, to
+ * find the hot spots of a layout.
+ * <p>
+ * Typical usage:
+ * 
+ * <pre>
+ * PrintProfiler profiler = new PrintProfiler();
+ * PrintJob job = new PrintJob(name, profiler.wrapTree(factory.createPrint()));
+ * PaperClips.getPages(job, printer);
+ * System.out.println(profiler.getReport());
+ * </pre>
+ * 
+ * The measures add overhead to every call; the profiler should not be used in production.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class PrintProfiler {
+
+    /**
+     * Measures of a wrapped print.
+     * 
+     * @author Patrik Dufresne
+     * 
+     */
+    public static class Node {
+
+        /**
+         * Number of calls per function.
+         */
+        private long[] calls = new long[FUNCTION_COUNT];
+
+        /**
+         * The wrapped children.
+         */
+        private List<Node> children = new ArrayList<Node>();
+
+        /**
+         * The node name.
+         */
+        private String name;
+
+        /**
+         * The parent node or null.
+         */
+        private Node parent;
+
+        /**
+         * Time spent per function in nanoseconds, including the children.
+         */
+        private long[] times = new long[FUNCTION_COUNT];
+
+        /**
+         * Create a new node.
+         * 
+         * @param name
+         *            the node name
+         * @param parent
+         *            the parent node or null
+         */
+        Node(String name, Node parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        /**
+         * Returns the number of calls to the given function.
+         * 
+         * @param function
+         *            one of {@link PrintProfiler#MINIMUM_SIZE}, {@link PrintProfiler#PREFERRED_SIZE},
+         *            {@link PrintProfiler#NEXT} or {@link PrintProfiler#COPY}
+         * @return the number of calls
+         */
+        public synchronized long getCalls(int function) {
+            return this.calls[function];
+        }
+
+        /**
+         * Returns the node name: the print class name followed by a sequence number.
+         * 
+         * @return the name
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Returns the parent node.
+         * 
+         * @return the parent or null if this node is a root
+         */
+        public Node getParent() {
+            return this.parent;
+        }
+
+        /**
+         * Returns the path of this node from the root, e.g.: SeriesPrint#0/OffsetPrint#1.
+         * 
+         * @return the path
+         */
+        public String getPath() {
+            return this.parent != null ? this.parent.getPath() + "/" + this.name : this.name; //$NON-NLS-1$
+        }
+
+        /**
+         * Returns the time spent in the node, excluding the time spent in the wrapped children.
+         * 
+         * @return the time in nanoseconds
+         */
+        public long getSelfTime() {
+            long self = getTotalTime();
+            synchronized (this) {
+                for (Node child : this.children) {
+                    self -= child.getTotalTime();
+                }
+            }
+            return Math.max(0, self);
+        }
+
+        /**
+         * Returns the time spent in the given function, including the time spent in the children.
+         * 
+         * @param function
+         *            one of {@link PrintProfiler#MINIMUM_SIZE}, {@link PrintProfiler#PREFERRED_SIZE},
+         *            {@link PrintProfiler#NEXT} or {@link PrintProfiler#COPY}
+         * @return the time in nanoseconds
+         */
+        public synchronized long getTime(int function) {
+            return this.times[function];
+        }
+
+        /**
+         * Returns the time spent in all the functions, including the time spent in the children.
+         * 
+         * @return the time in nanoseconds
+         */
+        public synchronized long getTotalTime() {
+            long total = 0;
+            for (long time : this.times) {
+                total += time;
+            }
+            return total;
+        }
+
+        /**
+         * Record a call.
+         * 
+         * @param function
+         *            the function called
+         * @param nanos
+         *            the time spent
+         */
+        synchronized void record(int function, long nanos) {
+            this.calls[function]++;
+            this.times[function] += nanos;
+        }
+
+        /**
+         * Reset the measures.
+         */
+        synchronized void reset() {
+            this.calls = new long[FUNCTION_COUNT];
+            this.times = new long[FUNCTION_COUNT];
+        }
+    }
+
+    /**
+     * The <code>copy</code> function.
+     */
+    public static final int COPY = 3;
+
+    /**
+     * Number of functions measured.
+     */
+    private static final int FUNCTION_COUNT = 4;
+
+    /**
+     * The <code>minimumSize</code> function.
+     */
+    public static final int MINIMUM_SIZE = 0;
+
+    /**
+     * Number of nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    /**
+     * The <code>next</code> function.
+     */
+    public static final int NEXT = 2;
+
+    /**
+     * The <code>preferredSize</code> function.
+     */
+    public static final int PREFERRED_SIZE = 1;
+
+    /**
+     * All the nodes in creation order.
+     */
+    private List<Node> nodes = new ArrayList<Node>();
+
+    /**
+     * Create a new node.
+     * 
+     * @param print
+     *            the print to be wrapped
+     * @param parent
+     *            the parent node or null
+     * @return the node
+     */
+    private synchronized Node createNode(Print print, Node parent) {
+        Node node = new Node(print.getClass().getSimpleName() + "#" + this.nodes.size(), parent); //$NON-NLS-1$
+        this.nodes.add(node);
+        if (parent != null) {
+            synchronized (parent) {
+                parent.children.add(node);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Returns the nodes in creation order. The root nodes come before their children.
+     * 
+     * @return the nodes
+     */
+    public synchronized List<Node> getNodes() {
+        return Collections.unmodifiableList(new ArrayList<Node>(this.nodes));
+    }
+
+    /**
+     * Returns a report of the nodes sorted by the time spent in the node itself. One line per node with the number of
+     * calls and the time spent in each function, including the children.
+     * 
+     * @return the report
+     */
+    public String getReport() {
+        List<Node> sorted = new ArrayList<Node>(getNodes());
+        Collections.sort(sorted, new Comparator<Node>() {
+            @Override
+            public int compare(Node o1, Node o2) {
+                long t1 = o1.getSelfTime();
+                long t2 = o2.getSelfTime();
+                return t1 < t2 ? 1 : t1 > t2 ? -1 : 0;
+            }
+        });
+        StringBuilder buf = new StringBuilder();
+        buf.append(String.format("%10s %10s %18s %18s %18s %18s  %s%n", //$NON-NLS-1$
+                "self ms", "total ms", "minimumSize", "preferredSize", "next", "copy", "node")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+        for (Node node : sorted) {
+            buf.append(String.format("%10.2f %10.2f", //$NON-NLS-1$
+                    Double.valueOf(node.getSelfTime() / NANOS_PER_MILLI), Double.valueOf(node.getTotalTime() / NANOS_PER_MILLI)));
+            for (int function = 0; function < FUNCTION_COUNT; function++) {
+                buf.append(String.format(" %8d/%7.2fms", //$NON-NLS-1$
+                        Long.valueOf(node.getCalls(function)), Double.valueOf(node.getTime(function) / NANOS_PER_MILLI)));
+            }
+            buf.append("  ").append(node.getPath()).append(String.format("%n")); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Rebuild the given print with its children wrapped. The prints of unsupported types are returned as is: their
+     * children are not measured separately.
+     * 
+     * @param print
+     *            the print
+     * @param node
+     *            the node of the print
+     * @return the rebuilt print
+     */
+    private Print rebuild(Print print, Node node) {
+        Class<?> type = print.getClass();
+        if (type == OffsetPrint.class) {
+            OffsetPrint offset = (OffsetPrint) print;
+            return new OffsetPrint(wrapTree(offset.target, node), offset.hAlign, offset.vAlign, offset.offset);
+        } else if (type == PaddingPrint.class) {
+            PaddingPrint padding = (PaddingPrint) print;
+            return new PaddingPrint(wrapTree(padding.target, node), padding.padding);
+        } else if (type == MaxSizePrint.class) {
+            MaxSizePrint maxSize = (MaxSizePrint) print;
+            return new MaxSizePrint(wrapTree(maxSize.target, node), maxSize.width, maxSize.height);
+        } else if (type == AlignPrint.class) {
+            AlignPrint align = (AlignPrint) print;
+            Point alignment = align.getAlignment();
+            return new AlignPrint(wrapTree(align.getTarget(), node), alignment.x, alignment.y);
+        } else if (type == BorderPrint.class || type == GapPrint.class) {
+            BorderPrint border = (BorderPrint) print;
+            return new BorderPrint(wrapTree(border.getTarget(), node), border.getBorder());
+        } else if (type == SeriesPrint.class) {
+            SeriesPrint series = new SeriesPrint();
+            for (Print item : ((SeriesPrint) print).getItems()) {
+                series.add(wrapTree(item, node));
+            }
+            return series;
+        }
+        return print;
+    }
+
+    /**
+     * Reset the measures of all the nodes.
+     */
+    public void reset() {
+        for (Node node : getNodes()) {
+            node.reset();
+        }
+    }
+
+    /**
+     * Wrap the given print. The measures include the time spent in its children.
+     * 
+     * @param print
+     *            the print to wrap
+     * @return the wrapped print
+     */
+    public ProfilingPrint wrap(Print print) {
+        if (print == null) {
+            throw new NullPointerException();
+        }
+        return new ProfilingPrint(print, createNode(print, null));
+    }
+
+    /**
+     * Wrap the given print and its children recursively. The supported prints are rebuilt with their children
+     * wrapped: {@link OffsetPrint}, {@link PaddingPrint}, {@link MaxSizePrint}, {@link AlignPrint},
+     * {@link BorderPrint}, {@link GapPrint} and {@link SeriesPrint}. Other prints (e.g.: a GridPrint) are wrapped as a
+     * whole.
+     * 
+     * @param print
+     *            the root print
+     * @return the wrapped print
+     */
+    public ProfilingPrint wrapTree(Print print) {
+        if (print == null) {
+            throw new NullPointerException();
+        }
+        return wrapTree(print, null);
+    }
+
+    /**
+     * Wrap the given print and its children recursively.
+     * 
+     * @param print
+     *            the print
+     * @param parent
+     *            the parent node or null
+     * @return the wrapped print
+     */
+    private ProfilingPrint wrapTree(Print print, Node parent) {
+        if (print instanceof ProfilingPrint) {
+            return (ProfilingPrint) print;
+        }
+        Node node = createNode(print, parent);
+        return new ProfilingPrint(rebuild(print, node), node);
+    }
+
+}
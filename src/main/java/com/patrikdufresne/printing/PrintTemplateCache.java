@@ -0,0 +1,271 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.eclipse.nebula.paperclips.core.Print;
+
+/**
+ * Cache of pre-built Print fragments, e.g.: letterheads, column headers or legal footers. The fragments are keyed by
+ * a name and a list of parameters compared with <code>equals()</code>, arrays being compared by content. Prints
+ * implementing <code>equals()</code> structurally, like {@link OffsetPrint}, {@link PaddingPrint} or
+ * {@link MaxSizePrint}, may be used as parameters.
+ * <p>
+ * The names are global to a cache. Since the {@link #getDefault() shared instance} is used by all the print factories,
+ * the names should be qualified, as {@link PrintFactory#getTemplate(IPrintTemplateBuilder, String, Object...)} does
+ * with the factory class name.
+ * <p>
+ * A Print only holds the description of the content, the layout state is kept by its iterators. So the same fragment
+ * may be added to many documents and laid out by many threads, as long as it's not modified once cached. The least
+ * recently used fragments are discarded when the cache is full. This class is thread safe.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class PrintTemplateCache {
+
+    /**
+     * Key of a cached template.
+     */
+    private static class Key {
+
+        private final String name;
+        private final Object[] parameters;
+
+        Key(String name, Object[] parameters) {
+            this.name = name;
+            this.parameters = parameters != null ? parameters.clone() : new Object[0];
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null) return false;
+            if (getClass() != obj.getClass()) return false;
+            Key other = (Key) obj;
+            return this.name.equals(other.name) && Arrays.deepEquals(this.parameters, other.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + this.name.hashCode();
+            result = prime * result + Arrays.deepHashCode(this.parameters);
+            return result;
+        }
+    }
+
+    /**
+     * Default maximum number of templates.
+     */
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    /**
+     * The shared instance.
+     */
+    private static final PrintTemplateCache DEFAULT = new PrintTemplateCache();
+
+    /**
+     * Returns the cache shared by the print factories.
+     * 
+     * @return the shared cache
+     */
+    public static PrintTemplateCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * The cached templates in access order.
+     */
+    private LinkedHashMap<Key, Print> entries = new LinkedHashMap<Key, Print>(16, 0.75f, true);
+
+    /**
+     * Number of templates found in the cache.
+     */
+    private long hitCount;
+
+    /**
+     * Maximum number of templates.
+     */
+    private int maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * Number of templates created.
+     */
+    private long missCount;
+
+    /**
+     * Remove all the templates.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Remove the least recently used templates until the cache fit its maximum size.
+     */
+    private void evict() {
+        Iterator<Key> iter = this.entries.keySet().iterator();
+        while (this.entries.size() > this.maxSize && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+        }
+    }
+
+    /**
+     * Returns the cached template.
+     * 
+     * @param name
+     *            the template name
+     * @param parameters
+     *            the template parameters
+     * @return the template or null if not cached
+     */
+    public synchronized Print get(String name, Object... parameters) {
+        if (name == null) {
+            throw new NullPointerException();
+        }
+        return this.entries.get(new Key(name, parameters));
+    }
+
+    /**
+     * Returns the number of templates found in the cache by {@link #getTemplate(IPrintTemplateBuilder, String, Object...)}.
+     * 
+     * @return the number of hits
+     */
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * Returns the maximum number of templates.
+     * 
+     * @return the maximum size
+     */
+    public synchronized int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Returns the number of templates created by {@link #getTemplate(IPrintTemplateBuilder, String, Object...)}.
+     * 
+     * @return the number of misses
+     */
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * Returns the cached template or create it using the builder. The builder is called without holding any lock, so
+     * two threads may create the same template at once; the first one cached is kept and returned to both.
+     * 
+     * @param builder
+     *            the builder used to create the template if not cached
+     * @param name
+     *            the template name
+     * @param parameters
+     *            the template parameters, given to the builder
+     * @return the template
+     */
+    public Print getTemplate(IPrintTemplateBuilder builder, String name, Object... parameters) {
+        if (builder == null || name == null) {
+            throw new NullPointerException();
+        }
+        Key key = new Key(name, parameters);
+        synchronized (this) {
+            Print print = this.entries.get(key);
+            if (print != null) {
+                this.hitCount++;
+                return print;
+            }
+            this.missCount++;
+        }
+        Print print = builder.createPrint(key.parameters.clone());
+        if (print == null) {
+            throw new NullPointerException();
+        }
+        synchronized (this) {
+            Print cached = this.entries.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            this.entries.put(key, print);
+            evict();
+        }
+        return print;
+    }
+
+    /**
+     * Add a template to the cache.
+     * 
+     * @param print
+     *            the template. Must not be modified once cached.
+     * @param name
+     *            the template name
+     * @param parameters
+     *            the template parameters
+     */
+    public synchronized void put(Print print, String name, Object... parameters) {
+        if (print == null || name == null) {
+            throw new NullPointerException();
+        }
+        this.entries.put(new Key(name, parameters), print);
+        evict();
+    }
+
+    /**
+     * Remove all the templates with the given name.
+     * 
+     * @param name
+     *            the template name
+     */
+    public synchronized void remove(String name) {
+        Iterator<Key> iter = this.entries.keySet().iterator();
+        while (iter.hasNext()) {
+            if (iter.next().name.equals(name)) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum number of templates. Templates are removed if required.
+     * 
+     * @param maxSize
+     *            the maximum size
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    /**
+     * Returns the number of templates cached.
+     * 
+     * @return the number of templates
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+}
@@ -17,6 +17,7 @@ package com.patrikdufresne.printing;
 
 import java.lang.reflect.InvocationTargetException;
 
+import org.eclipse.nebula.paperclips.core.Print;
 import org.eclipse.nebula.paperclips.core.PrintJob;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -56,6 +57,12 @@ public abstract class PrintWizard extends Wizard {
          */
         private PrintJob job;
 
+        /**
+         * The root print counting the pieces or null if no metrics listener is
+         * set.
+         */
+        private CountingPrint countingPrint;
+
         /**
          * Create a new runnable.
          * 
@@ -77,6 +84,17 @@ public abstract class PrintWizard extends Wizard {
             return this.job;
         }
 
+        /**
+         * Notify the metrics listener, if any, of the pieces created by the
+         * root print.
+         */
+        public void fireCounts() {
+            if (this.countingPrint != null) {
+                fireCountRecorded(this.job.getName(), IPrintMetricsListener.COUNT_ROOT_PIECES, this.countingPrint.getPieceCount());
+                fireCountRecorded(this.job.getName(), IPrintMetricsListener.COUNT_ROOT_ITERATOR_COPIES, this.countingPrint.getCopyCount());
+            }
+        }
+
         @Override
         public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
 
@@ -84,11 +102,17 @@ public abstract class PrintWizard extends Wizard {
             monitor.beginTask(localized.get("PrintAction.task.preparePreview"), //$NON-NLS-1$
                     IProgressMonitor.UNKNOWN);
 
+            long start = System.nanoTime();
             initFactory(factory);
+            firePhaseCompleted(factory.getName(), IPrintMetricsListener.PHASE_INIT_FACTORY, start);
 
-            this.job = new PrintJob(factory.getName(), factory.createPrint());
-            this.job.setMargins(factory.getMargins());
-            this.job.setOrientation(factory.getOrientation());
+            start = System.nanoTime();
+            Print print = factory.createPrint();
+            if (getMetricsListener() != null) {
+                print = this.countingPrint = new CountingPrint(print);
+            }
+            this.job = PrintFactory.createPrintJob(factory, print);
+            firePhaseCompleted(this.job.getName(), IPrintMetricsListener.PHASE_CREATE_PRINT, start);
 
             // Task completed
             monitor.done();
@@ -101,6 +125,11 @@ public abstract class PrintWizard extends Wizard {
      */
     private Localized localized = Localized.load(PrintAction.class);
 
+    /**
+     * The listener notified of the time spent in each phase or null.
+     */
+    private volatile IPrintMetricsListener metricsListener;
+
     /**
      * The factory used to print.
      */
@@ -124,6 +153,49 @@ public abstract class PrintWizard extends Wizard {
         setNeedsProgressMonitor(true);
     }
 
+    /**
+     * Notify the metrics listener, if any, of a count.
+     * 
+     * @param jobName
+     *            the print job name
+     * @param counter
+     *            the counter name
+     * @param count
+     *            the count
+     */
+    protected void fireCountRecorded(String jobName, String counter, long count) {
+        IPrintMetricsListener listener = this.metricsListener;
+        if (listener != null) {
+            listener.countRecorded(jobName, counter, count);
+        }
+    }
+
+    /**
+     * Notify the metrics listener, if any, that a phase is completed.
+     * 
+     * @param jobName
+     *            the print job name
+     * @param phase
+     *            the phase name
+     * @param start
+     *            the value of {@link System#nanoTime()} when the phase started
+     */
+    protected void firePhaseCompleted(String jobName, String phase, long start) {
+        IPrintMetricsListener listener = this.metricsListener;
+        if (listener != null) {
+            listener.phaseCompleted(jobName, phase, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns the listener notified of the time spent in each phase.
+     * 
+     * @return the listener or null if not set
+     */
+    public IPrintMetricsListener getMetricsListener() {
+        return this.metricsListener;
+    }
+
     /**
      * Returns the key used to save the printer settings.
      * 
@@ -184,6 +256,7 @@ public abstract class PrintWizard extends Wizard {
             }
 
             // Open the preview dialog
+            long start = System.nanoTime();
             PrintPreviewDialog dlg = new PrintPreviewDialog(getShell());
             dlg.setPrintJob(runnable.getPrintJob());
 
@@ -192,7 +265,10 @@ public abstract class PrintWizard extends Wizard {
                 PrinterData data = PrintPreferenceStoreUtil.getPrinterData(this.prefStore, this.printerDataPrefKey);
                 dlg.setPrinterData(data);
             }
+            dlg.create();
+            firePhaseCompleted(runnable.getPrintJob().getName(), IPrintMetricsListener.PHASE_PREVIEW, start);
             int returnCode = dlg.open();
+            runnable.fireCounts();
 
             // Save preference
             // Save the preferences
@@ -204,6 +280,19 @@ public abstract class PrintWizard extends Wizard {
         return true;
     }
 
+    /**
+     * Sets the listener notified of the time spent in each phase: factory initialization, print creation and preview.
+     * As for the preview of {@link PrintAction}, the pieces and the copies of the root iterator are counted once the
+     * preview is closed. The pages are not counted since the preview lays them out on demand. The listener may be
+     * called by the thread running the wizard operation.
+     * 
+     * @param metricsListener
+     *            the listener or null to unset
+     */
+    public void setMetricsListener(IPrintMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
     /**
      * Sets the preference store to use to save the printer settings selected by the user.
      * 
@@ -44,7 +44,7 @@ public class PrinterDialog extends TitleAreaDialog {
 
     // In GTK, the printer list will include Print To File printer,
     // but with the wrong flags. Let fix it using
-    private static final String GTK_FILE_BACKEND = "GtkPrintBackendFile"; //$NON-NLS-1$
+    static final String GTK_FILE_BACKEND = "GtkPrintBackendFile"; //$NON-NLS-1$
 
     PrinterData printerData = new PrinterData();
 
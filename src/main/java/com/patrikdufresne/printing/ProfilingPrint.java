@@ -0,0 +1,134 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import org.eclipse.nebula.paperclips.core.Print;
+import org.eclipse.nebula.paperclips.core.PrintIterator;
+import org.eclipse.nebula.paperclips.core.PrintPiece;
+
+import org.eclipse.swt.graphics.Device;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Point;
+
+/**
+ * A diagnostic wrapper print recording the number of calls and the time spent in the <code>minimumSize</code>,
+ * <code>preferredSize</code>, <code>next</code> and <code>copy</code> functions of the target iterators. The values are
+ * recorded into a node of a {@link PrintProfiler}. Instances are created with {@link PrintProfiler#wrap(Print)} or
+ * {@link PrintProfiler#wrapTree(Print)}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class ProfilingPrint implements Print {
+
+    /**
+     * The node receiving the measures.
+     */
+    final PrintProfiler.Node node;
+
+    /**
+     * The wrapped print.
+     */
+    final Print target;
+
+    /**
+     * Create a new profiling print.
+     * 
+     * @param target
+     *            the print to wrap
+     * @param node
+     *            the node receiving the measures
+     */
+    ProfilingPrint(Print target, PrintProfiler.Node node) {
+        if (target == null || node == null) {
+            throw new NullPointerException();
+        }
+        this.target = target;
+        this.node = node;
+    }
+
+    /**
+     * Returns the node receiving the measures.
+     * 
+     * @return the node
+     */
+    public PrintProfiler.Node getNode() {
+        return this.node;
+    }
+
+    /**
+     * Returns the wrapped print.
+     * 
+     * @return the wrapped print
+     */
+    public Print getTarget() {
+        return this.target;
+    }
+
+    public PrintIterator iterator(Device device, GC gc) {
+        return new ProfilingIterator(this.node, this.target.iterator(device, gc));
+    }
+}
+
+class ProfilingIterator implements PrintIterator {
+    private final PrintProfiler.Node node;
+    private final PrintIterator target;
+
+    ProfilingIterator(PrintProfiler.Node node, PrintIterator target) {
+        this.node = node;
+        this.target = target;
+    }
+
+    public boolean hasNext() {
+        return target.hasNext();
+    }
+
+    public Point minimumSize() {
+        long start = System.nanoTime();
+        try {
+            return target.minimumSize();
+        } finally {
+            node.record(PrintProfiler.MINIMUM_SIZE, System.nanoTime() - start);
+        }
+    }
+
+    public Point preferredSize() {
+        long start = System.nanoTime();
+        try {
+            return target.preferredSize();
+        } finally {
+            node.record(PrintProfiler.PREFERRED_SIZE, System.nanoTime() - start);
+        }
+    }
+
+    public PrintPiece next(int width, int height) {
+        long start = System.nanoTime();
+        try {
+            return target.next(width, height);
+        } finally {
+            node.record(PrintProfiler.NEXT, System.nanoTime() - start);
+        }
+    }
+
+    public PrintIterator copy() {
+        long start = System.nanoTime();
+        try {
+            return new ProfilingIterator(node, target.copy());
+        } finally {
+            node.record(PrintProfiler.COPY, System.nanoTime() - start);
+        }
+    }
+}
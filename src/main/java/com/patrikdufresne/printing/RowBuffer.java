@@ -0,0 +1,132 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Rows pulled from the source and not yet laid out by all the iterators sharing this buffer. Iterators garbage
+ * collected are ignored.
+ * <p>
+ * If the source iterator implements {@link Closeable}, it's closed when all the rows were read or when the buffer is
+ * garbage collected, once all the iterators sharing it are discarded.
+ * 
+ * @author Patrik Dufresne
+ * 
+ * @param <T>
+ *            the row type
+ */
+class RowBuffer<T> {
+    /**
+     * An iterator reading the buffer.
+     */
+    interface Cursor {
+        /**
+         * Returns the index of the next row to be read.
+         */
+        long getPosition();
+    }
+
+    private final Iterator<T> source;
+    private final List<T> rows = new ArrayList<T>();
+    private final List<WeakReference<Cursor>> cursors = new ArrayList<WeakReference<Cursor>>();
+    // Index of the first buffered row.
+    private long first;
+    // True if the source was closed.
+    private boolean closed;
+
+    /**
+     * Close the given iterator if it implements {@link Closeable}.
+     * 
+     * @param rows
+     *            the iterator
+     */
+    static void close(Iterator<?> rows) {
+        if (rows instanceof Closeable) {
+            try {
+                ((Closeable) rows).close();
+            } catch (IOException e) {
+                // Nothing more is read from the rows.
+            }
+        }
+    }
+
+    RowBuffer(Iterator<T> source) {
+        if (source == null) {
+            throw new NullPointerException();
+        }
+        this.source = source;
+    }
+
+    synchronized void close() {
+        if (!closed) {
+            closed = true;
+            close(source);
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            close();
+        } finally {
+            super.finalize();
+        }
+    }
+
+    synchronized T get(long index) {
+        if (!has(index)) throw new IndexOutOfBoundsException();
+        return rows.get((int) (index - first));
+    }
+
+    synchronized boolean has(long index) {
+        while (index - first >= rows.size() && !closed) {
+            if (source.hasNext()) {
+                rows.add(source.next());
+            } else {
+                close();
+            }
+        }
+        return index >= first && index - first < rows.size();
+    }
+
+    synchronized void register(Cursor cursor) {
+        cursors.add(new WeakReference<Cursor>(cursor));
+    }
+
+    synchronized void trim() {
+        long min = Long.MAX_VALUE;
+        Iterator<WeakReference<Cursor>> iter = cursors.iterator();
+        while (iter.hasNext()) {
+            Cursor cursor = iter.next().get();
+            if (cursor == null) {
+                iter.remove();
+            } else {
+                min = Math.min(min, cursor.getPosition());
+            }
+        }
+        int count = (int) Math.min(min - first, rows.size());
+        if (count > 0) {
+            rows.subList(0, count).clear();
+            first += count;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import org.eclipse.nebula.paperclips.core.PageEnumeration;
+import org.eclipse.nebula.paperclips.core.PaperClips;
+import org.eclipse.nebula.paperclips.core.PrintJob;
+import org.eclipse.nebula.paperclips.core.PrintPiece;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.printing.Printer;
+import org.eclipse.swt.printing.PrinterData;
+
+import com.patrikdufresne.util.Localized;
+
+/**
+ * This class send a {@link PrintJob} to a printer one page at a time. Each page is laid out, painted and disposed
+ * before the next one is laid out. The memory used is bounded by a single page and the printer receive the first page
+ * while the following pages are still being laid out.
+ * <p>
+ * Since the pages are painted as soon as they are laid out, a page decoration displaying the total number of pages
+ * (e.g.: "Page 1 of 10") only knows the pages laid out so far. Use {@link PaperClips#print(PrintJob, PrinterData)}
+ * for such document.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class StreamingPrinter {
+
+    /**
+     * File format: Portable Document Format.
+     */
+    public static final String FORMAT_PDF = "pdf"; //$NON-NLS-1$
+
+    /**
+     * File format: PostScript.
+     */
+    public static final String FORMAT_PS = "ps"; //$NON-NLS-1$
+
+    /**
+     * Returns a printer data to print into a PDF or PostScript file according to the file name extension:
+     * <code>.pdf</code> or <code>.ps</code>.
+     * 
+     * @param fileName
+     *            the file name
+     * @return the printer data
+     * @see #getFilePrinterData(String, String)
+     */
+    public static PrinterData getFilePrinterData(String fileName) {
+        if (fileName == null) {
+            throw new NullPointerException();
+        }
+        String format = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
+        return getFilePrinterData(fileName, format);
+    }
+
+    /**
+     * Returns a printer data to print into a file of the given format. The GTK print to file backend is used, so no
+     * real printer is required. The backend select the format from the file name extension, so the file name must end
+     * with the extension of the format.
+     * <p>
+     * On other platforms, printing to a file uses the driver of a real printer and the file format depends on the
+     * machine, so an {@link org.eclipse.swt.SWTException} with {@link SWT#ERROR_NOT_IMPLEMENTED} is thrown.
+     * 
+     * @param fileName
+     *            the file name
+     * @param format
+     *            the file format: {@link #FORMAT_PDF} or {@link #FORMAT_PS}
+     * @return the printer data
+     */
+    public static PrinterData getFilePrinterData(String fileName, String format) {
+        if (fileName == null || format == null) {
+            throw new NullPointerException();
+        }
+        if (!FORMAT_PDF.equals(format) && !FORMAT_PS.equals(format)) {
+            throw new IllegalArgumentException("unsupported format: " + format); //$NON-NLS-1$
+        }
+        if (!fileName.toLowerCase().endsWith("." + format)) { //$NON-NLS-1$
+            throw new IllegalArgumentException("the file name must end with ." + format); //$NON-NLS-1$
+        }
+        PrinterData data = null;
+        PrinterData[] printers = Printer.getPrinterList();
+        for (int i = 0; printers != null && i < printers.length && data == null; i++) {
+            if (PrinterDialog.GTK_FILE_BACKEND.equals(printers[i].driver)) {
+                data = printers[i];
+            }
+        }
+        if (data == null) {
+            SWT.error(SWT.ERROR_NOT_IMPLEMENTED, null, " [printing to a " + format + " file requires the GTK print to file backend]"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        data.printToFile = true;
+        data.fileName = fileName;
+        return data;
+    }
+
+    /**
+     * Write the print job into a PDF or PostScript file according to the file name extension.
+     * 
+     * @param job
+     *            the print job
+     * @param fileName
+     *            the file name
+     * @return the streaming printer used, to get the number of pages and the throughput
+     * @see #printToFile(PrintJob, String, String)
+     */
+    public static StreamingPrinter printToFile(PrintJob job, String fileName) {
+        return print(job, getFilePrinterData(fileName));
+    }
+
+    /**
+     * Write the print job into a file of the given format without any dialog. The pages are written as they are laid
+     * out. This function should be called by the main thread.
+     * 
+     * @param job
+     *            the print job
+     * @param fileName
+     *            the file name
+     * @param format
+     *            the file format: {@link #FORMAT_PDF} or {@link #FORMAT_PS}
+     * @return the streaming printer used, to get the number of pages and the throughput
+     * @see #getFilePrinterData(String, String)
+     */
+    public static StreamingPrinter printToFile(PrintJob job, String fileName, String format) {
+        StreamingPrinter streamingPrinter = new StreamingPrinter(job);
+        Printer printer = new Printer(getFilePrinterData(fileName, format));
+        try {
+            streamingPrinter.print(printer);
+        } finally {
+            DeviceResourcePool.dispose(printer);
+            printer.dispose();
+        }
+        return streamingPrinter;
+    }
+
+    /**
+     * Send the print job to the printer one page at a time.
+     * 
+     * @param job
+     *            the print job
+     * @param data
+     *            the printer data
+     * @return the streaming printer used, to get the number of pages and the throughput
+     */
+    public static StreamingPrinter print(PrintJob job, PrinterData data) {
+        StreamingPrinter streamingPrinter = new StreamingPrinter(job);
+        Printer printer = new Printer(data);
+        try {
+            streamingPrinter.print(printer);
+        } finally {
+            DeviceResourcePool.dispose(printer);
+            printer.dispose();
+        }
+        return streamingPrinter;
+    }
+
+    /**
+     * Time spent to print the job in nanoseconds.
+     */
+    private long elapsedTime;
+
+    /**
+     * The print job.
+     */
+    private PrintJob job;
+
+    /**
+     * Number of pages sent to the printer.
+     */
+    private int pageCount;
+
+    /**
+     * Create a new streaming printer.
+     * 
+     * @param job
+     *            the print job to print
+     */
+    public StreamingPrinter(PrintJob job) {
+        if (job == null) {
+            throw new NullPointerException();
+        }
+        this.job = job;
+    }
+
+    /**
+     * Returns the time spent by the last call to print.
+     * 
+     * @return the time in nanoseconds
+     */
+    public long getElapsedTime() {
+        return this.elapsedTime;
+    }
+
+    /**
+     * Returns the number of pages sent to the printer by the last call to print.
+     * 
+     * @return the number of pages
+     */
+    public int getPageCount() {
+        return this.pageCount;
+    }
+
+    /**
+     * Returns the throughput of the last call to print.
+     * 
+     * @return the number of pages per second
+     */
+    public float getPagesPerSecond() {
+        if (this.elapsedTime <= 0) {
+            return 0;
+        }
+        return this.pageCount * 1000000000f / this.elapsedTime;
+    }
+
+    /**
+     * Returns the print job.
+     * 
+     * @return the print job
+     */
+    public PrintJob getPrintJob() {
+        return this.job;
+    }
+
+    /**
+     * Send the print job to the given printer.
+     * 
+     * @param printer
+     *            the printer
+     */
+    public void print(Printer printer) {
+        try {
+            print(printer, new NullProgressMonitor());
+        } catch (InterruptedException e) {
+            // Can't happen, the monitor is never cancelled.
+        }
+    }
+
+    /**
+     * Send the print job to the given printer. The progress is reported page per page to the given monitor. The page
+     * range of the printer data is honoured and the layout stop after the last page of the range.
+     * 
+     * @param printer
+     *            the printer
+     * @param monitor
+     *            the progress monitor
+     * @throws InterruptedException
+     *             if the monitor is cancelled. The printer job is cancelled.
+     */
+    public void print(Printer printer, IProgressMonitor monitor) throws InterruptedException {
+        long start = System.nanoTime();
+        this.pageCount = 0;
+        if (!printer.startJob(this.job.getName())) {
+            SWT.error(SWT.ERROR_NO_HANDLES);
+        }
+        boolean completed = false;
+        GC gc = new GC(printer);
+        try {
+            // Compute the page range
+            PrinterData data = printer.getPrinterData();
+            int startPage = 1;
+            int endPage = Integer.MAX_VALUE;
+            if (data != null && data.scope == PrinterData.PAGE_RANGE) {
+                startPage = data.startPage;
+                endPage = data.endPage;
+            }
+
+            PageEnumeration pages = PaperClips.getPageEnumeration(this.job, printer, gc);
+            int index = 0;
+            while (pages.hasNext() && index < endPage) {
+                if (monitor.isCanceled()) {
+                    throw new InterruptedException();
+                }
+                PrintPiece page = pages.nextPage();
+                if (page == null) {
+                    // The content is too large to fit on a page. The printer job is cancelled.
+                    PaperClips.error("Cannot layout page " + (index + 1) + ": the content is too large to fit on a page"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                index++;
+                try {
+                    if (index >= startPage && printer.startPage()) {
+                        page.paint(gc, 0, 0);
+                        printer.endPage();
+                        this.pageCount++;
+                        monitor.subTask(Localized.format(StreamingPrinter.class, "StreamingPrinter.task.printPage", //$NON-NLS-1$
+                                Integer.valueOf(index)));
+                        monitor.worked(1);
+                    }
+                } finally {
+                    page.dispose();
+                }
+            }
+            printer.endJob();
+            completed = true;
+        } finally {
+            gc.dispose();
+            if (!completed) {
+                printer.cancelJob();
+            }
+            this.elapsedTime = System.nanoTime() - start;
+        }
+    }
+
+}
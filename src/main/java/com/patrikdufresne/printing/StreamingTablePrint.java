@@ -0,0 +1,471 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.nebula.paperclips.core.CompositeEntry;
+import org.eclipse.nebula.paperclips.core.CompositePiece;
+import org.eclipse.nebula.paperclips.core.PaperClips;
+import org.eclipse.nebula.paperclips.core.Print;
+import org.eclipse.nebula.paperclips.core.PrintIterator;
+import org.eclipse.nebula.paperclips.core.PrintPiece;
+
+import org.eclipse.swt.graphics.Device;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Point;
+
+/**
+ * A table pulling its rows from a {@link IRowSource} as the pages are laid out. The cells of a row are created by a
+ * {@link IRowRenderer} when the row is laid out and discarded once the row is laid out, so the memory used doesn't
+ * depend on the number of rows. Used instead of a GridPrint for large tables.
+ * <p>
+ * The columns have a fixed width, so they are aligned from one page to another. The widths are either given or
+ * estimated from a sample of the rows by a {@link ColumnWidthSampler} when the table is first laid out. The header row
+ * is repeated at the top of every page. A row taller than the remaining space is split across pages.
+ * <p>
+ * A cell wider than its column, e.g. a long word in a row not sampled by the {@link ColumnWidthSampler}, doesn't fail
+ * the table: it is laid out at its minimum width and clipped to its column.
+ * 
+ * <pre>
+ * StreamingTablePrint&lt;Entry&gt; table = new StreamingTablePrint&lt;Entry&gt;(source, renderer, new int[] { 72, 288, 72 });
+ * table.setHeader(new TextPrint(&quot;Date&quot;), new TextPrint(&quot;Description&quot;), new TextPrint(&quot;Amount&quot;));
+ * </pre>
+ * 
+ * @author Patrik Dufresne
+ * 
+ * @param <T>
+ *            the row type
+ */
+public class StreamingTablePrint<T> implements Print {
+
+    /**
+     * The number of columns.
+     */
+    final int columnCount;
+
+    /**
+     * The column widths in points or null until computed by the sampler.
+     */
+    volatile int[] columnWidths;
+
+    /**
+     * The space between the columns in points.
+     */
+    int columnSpacing;
+
+    /**
+     * The header cells or null.
+     */
+    Print[] header;
+
+    /**
+     * The row renderer.
+     */
+    final IRowRenderer<T> renderer;
+
+    /**
+     * The sampler used to compute the column widths or null.
+     */
+    final ColumnWidthSampler<T> sampler;
+
+    /**
+     * The row source.
+     */
+    final IRowSource<T> source;
+
+    /**
+     * Create a new table with the column widths estimated from a sample of the rows.
+     * 
+     * @param source
+     *            the row source
+     * @param renderer
+     *            the renderer creating the cells of each row
+     * @param columnCount
+     *            the number of columns
+     * @param sampler
+     *            the sampler computing the column widths
+     */
+    public StreamingTablePrint(IRowSource<T> source, IRowRenderer<T> renderer, int columnCount, ColumnWidthSampler<T> sampler) {
+        if (source == null || renderer == null || sampler == null) {
+            throw new NullPointerException();
+        }
+        if (columnCount <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.source = source;
+        this.renderer = renderer;
+        this.columnCount = columnCount;
+        this.sampler = sampler;
+    }
+
+    /**
+     * Create a new table.
+     * 
+     * @param source
+     *            the row source
+     * @param renderer
+     *            the renderer creating the cells of each row
+     * @param columnWidths
+     *            the column widths, in points (72pts = 1").
+     */
+    public StreamingTablePrint(IRowSource<T> source, IRowRenderer<T> renderer, int[] columnWidths) {
+        if (source == null || renderer == null || columnWidths == null) {
+            throw new NullPointerException();
+        }
+        if (columnWidths.length == 0) {
+            throw new IllegalArgumentException();
+        }
+        this.source = source;
+        this.renderer = renderer;
+        this.columnCount = columnWidths.length;
+        this.columnWidths = columnWidths.clone();
+        this.sampler = null;
+    }
+
+    /**
+     * Returns the space between the columns.
+     * 
+     * @return the spacing in points
+     */
+    public int getColumnSpacing() {
+        return this.columnSpacing;
+    }
+
+    /**
+     * Returns the column widths.
+     * 
+     * @return the widths in points or null if not yet computed by the sampler
+     */
+    public int[] getColumnWidths() {
+        int[] widths = this.columnWidths;
+        return widths != null ? widths.clone() : null;
+    }
+
+    /**
+     * Returns the column widths, computing them with the sampler the first time. The widths are kept so the table is
+     * laid out the same way on every device.
+     * 
+     * @param device
+     *            the device used to measure the cells
+     * @param gc
+     *            the graphic context
+     * @return the widths in points
+     */
+    synchronized int[] getColumnWidths(Device device, GC gc) {
+        if (this.columnWidths == null) {
+            this.columnWidths = this.sampler.computeWidths(this.source, this.header, this.columnCount, this.columnSpacing, device, gc);
+        }
+        return this.columnWidths;
+    }
+
+    /**
+     * Returns the header cells.
+     * 
+     * @return the cells or null if not set
+     */
+    public Print[] getHeader() {
+        return this.header != null ? this.header.clone() : null;
+    }
+
+    public PrintIterator iterator(Device device, GC gc) {
+        return new StreamingTableIterator<T>(this, device, gc);
+    }
+
+    /**
+     * Sets the space between the columns.
+     * 
+     * @param columnSpacing
+     *            the spacing in points
+     */
+    public void setColumnSpacing(int columnSpacing) {
+        if (columnSpacing < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.columnSpacing = columnSpacing;
+    }
+
+    /**
+     * Sets the header cells, repeated at the top of every page.
+     * 
+     * @param cells
+     *            the cells, one per column, or null to unset
+     */
+    public void setHeader(Print... cells) {
+        this.header = cells != null && cells.length > 0 ? cells.clone() : null;
+    }
+}
+
+class StreamingTableIterator<T> implements PrintIterator, RowBuffer.Cursor {
+    private final StreamingTablePrint<T> print;
+    private final Device device;
+    private final GC gc;
+    private final RowBuffer<T> buffer;
+    private final int[] widths;
+    private final int spacing;
+
+    // Index of the next row to be laid out.
+    long position;
+    // The row split across pages or null.
+    private TableRowIterator current;
+
+    StreamingTableIterator(StreamingTablePrint<T> print, Device device, GC gc) {
+        this.print = print;
+        this.device = device;
+        this.gc = gc;
+        this.buffer = new RowBuffer<T>(print.source.open());
+        DeviceScale scale = DeviceScale.get(device);
+        int[] columnWidths = print.getColumnWidths(device, gc);
+        this.widths = new int[columnWidths.length];
+        for (int i = 0; i < this.widths.length; i++) {
+            this.widths[i] = scale.toPixelsX(columnWidths[i]);
+        }
+        this.spacing = scale.toPixelsX(print.columnSpacing);
+        this.buffer.register(this);
+    }
+
+    StreamingTableIterator(StreamingTableIterator<T> that) {
+        this.print = that.print;
+        this.device = that.device;
+        this.gc = that.gc;
+        this.buffer = that.buffer;
+        this.widths = that.widths;
+        this.spacing = that.spacing;
+        this.position = that.position;
+        this.current = that.current != null ? that.current.copy() : null;
+        this.buffer.register(this);
+    }
+
+    private TableRowIterator createRow(Print[] cells) {
+        return new TableRowIterator(cells, this.widths, this.spacing, this.device, this.gc);
+    }
+
+    public long getPosition() {
+        return this.position;
+    }
+
+    private TableRowIterator createHeader() {
+        return this.print.header != null ? createRow(this.print.header) : null;
+    }
+
+    public boolean hasNext() {
+        return this.current != null || this.buffer.has(this.position);
+    }
+
+    private Point size(boolean minimum) {
+        int height = 0;
+        TableRowIterator header = createHeader();
+        if (header != null) {
+            height += minimum ? header.minimumSize().y : header.preferredSize().y;
+        }
+        TableRowIterator row = this.current;
+        if (row == null && this.buffer.has(this.position)) {
+            row = createRow(this.print.renderer.createCells(this.buffer.get(this.position)));
+        }
+        if (row != null) {
+            height += minimum ? row.minimumSize().y : row.preferredSize().y;
+        }
+        return new Point(TableRowIterator.width(this.widths, this.spacing), height);
+    }
+
+    public Point minimumSize() {
+        return size(true);
+    }
+
+    public Point preferredSize() {
+        return size(false);
+    }
+
+    public PrintPiece next(int width, int height) {
+        List<CompositeEntry> entries = new ArrayList<CompositeEntry>();
+        List<PrintPiece> pieces = new ArrayList<PrintPiece>();
+        int y = 0;
+
+        // Repeat the header on every page.
+        TableRowIterator header = createHeader();
+        if (header != null) {
+            PrintPiece piece = PaperClips.next(header, width, height);
+            if (piece == null) return null;
+            if (header.hasNext()) {
+                piece.dispose();
+                return null;
+            }
+            pieces.add(piece);
+            entries.add(new CompositeEntry(piece, new Point(0, 0)));
+            y += piece.getSize().y;
+        }
+
+        // Work on a copy, the state is unchanged if nothing fit.
+        long pos = this.position;
+        TableRowIterator row = this.current != null ? this.current.copy() : null;
+        boolean body = false;
+        while (true) {
+            boolean created = false;
+            if (row == null) {
+                if (!this.buffer.has(pos)) break;
+                row = createRow(this.print.renderer.createCells(this.buffer.get(pos)));
+                pos++;
+                created = true;
+            }
+            PrintPiece piece = PaperClips.next(row, width, height - y);
+            if (piece == null) {
+                if (created) {
+                    // Start this row on the next page.
+                    row = null;
+                    pos--;
+                }
+                break;
+            }
+            pieces.add(piece);
+            entries.add(new CompositeEntry(piece, new Point(0, y)));
+            y += piece.getSize().y;
+            body = true;
+            if (row.hasNext()) {
+                // The row is split, the remaining goes on the next page.
+                break;
+            }
+            row = null;
+        }
+
+        if (!body) {
+            for (PrintPiece piece : pieces) {
+                piece.dispose();
+            }
+            return null;
+        }
+
+        this.position = pos;
+        this.current = row;
+        this.buffer.trim();
+        return new CompositePiece(entries.toArray(new CompositeEntry[entries.size()]), new Point(TableRowIterator.width(this.widths, this.spacing), y));
+    }
+
+    public PrintIterator copy() {
+        return new StreamingTableIterator<T>(this);
+    }
+}
+
+/**
+ * A row of cells of fixed width. Cells taller than the available height are split across pages. Cells wider than their
+ * column are laid out at their minimum width and clipped.
+ */
+class TableRowIterator implements PrintIterator {
+    private final PrintIterator[] cells;
+    private final int[] widths;
+    private final int spacing;
+
+    static int width(int[] widths, int spacing) {
+        int width = spacing * (widths.length - 1);
+        for (int w : widths) {
+            width += w;
+        }
+        return width;
+    }
+
+    TableRowIterator(Print[] cells, int[] widths, int spacing, Device device, GC gc) {
+        if (cells.length > widths.length) {
+            PaperClips.error("more cells than columns"); //$NON-NLS-1$
+        }
+        this.cells = new PrintIterator[widths.length];
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] != null) this.cells[i] = cells[i].iterator(device, gc);
+        }
+        this.widths = widths;
+        this.spacing = spacing;
+    }
+
+    TableRowIterator(TableRowIterator that) {
+        this.cells = new PrintIterator[that.cells.length];
+        for (int i = 0; i < this.cells.length; i++) {
+            if (that.cells[i] != null) this.cells[i] = that.cells[i].copy();
+        }
+        this.widths = that.widths;
+        this.spacing = that.spacing;
+    }
+
+    public boolean hasNext() {
+        for (PrintIterator cell : cells) {
+            if (cell != null && cell.hasNext()) return true;
+        }
+        return false;
+    }
+
+    private Point size(boolean minimum) {
+        int height = 0;
+        for (PrintIterator cell : cells) {
+            if (cell != null && cell.hasNext()) {
+                height = Math.max(height, minimum ? cell.minimumSize().y : cell.preferredSize().y);
+            }
+        }
+        return new Point(width(widths, spacing), height);
+    }
+
+    public Point minimumSize() {
+        return size(true);
+    }
+
+    public Point preferredSize() {
+        return size(false);
+    }
+
+    public PrintPiece next(int width, int height) {
+        int rowWidth = width(widths, spacing);
+        if (rowWidth > width) return null;
+
+        // Layout copies, the state is unchanged if a cell doesn't fit.
+        PrintIterator[] copies = new PrintIterator[cells.length];
+        List<CompositeEntry> entries = new ArrayList<CompositeEntry>();
+        List<PrintPiece> pieces = new ArrayList<PrintPiece>();
+        int rowHeight = 0;
+        int x = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] != null && cells[i].hasNext()) {
+                copies[i] = cells[i].copy();
+                PrintPiece piece = PaperClips.next(copies[i], widths[i], height);
+                if (piece == null) {
+                    // The cell may be wider than its column: layout it at its minimum width and clip it.
+                    int minimum = cells[i].minimumSize().x;
+                    if (minimum > widths[i]) {
+                        copies[i] = cells[i].copy();
+                        piece = PaperClips.next(copies[i], minimum, height);
+                        if (piece != null) {
+                            piece = new ClipPiece(piece, widths[i], piece.getSize().y);
+                        }
+                    }
+                }
+                if (piece == null) {
+                    for (PrintPiece p : pieces) {
+                        p.dispose();
+                    }
+                    return null;
+                }
+                pieces.add(piece);
+                entries.add(new CompositeEntry(piece, new Point(x, 0)));
+                rowHeight = Math.max(rowHeight, piece.getSize().y);
+            } else {
+                copies[i] = cells[i];
+            }
+            x += widths[i] + spacing;
+        }
+        System.arraycopy(copies, 0, cells, 0, cells.length);
+        return new CompositePiece(entries.toArray(new CompositeEntry[entries.size()]), new Point(rowWidth, rowHeight));
+    }
+
+    public TableRowIterator copy() {
+        return new TableRowIterator(this);
+    }
+}
@@ -0,0 +1,333 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Device;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.FontData;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Point;
+
+/**
+ * Cache of text extents. The extents are keyed by device, font data and string, so the same label repeated in a report
+ * is measured once per device. The least recently used extents are discarded when the cache is full.
+ * <p>
+ * Custom text prints should measure their text with this cache instead of calling {@link GC#textExtent(String)}:
+ * 
+ * <pre>
+ * Point size = TextExtentCache.getDefault().textExtent(gc, fontData, text);
+ * </pre>
+ * 
+ * The cache doesn't keep the devices from being garbage collected: the devices are compared by identity and only
+ * weakly referenced. The extents of a device are discarded with its {@link DeviceResourcePool}, see
+ * {@link DeviceResourcePool#dispose(Device)}, or by {@link #remove(Device)}. This class is thread safe.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class TextExtentCache {
+
+    /**
+     * Key of a cached extent.
+     */
+    private static class Key {
+
+        private final WeakReference<Device> device;
+        private final int deviceHash;
+        private final String font;
+        private final String text;
+        private final int flags;
+
+        Key(Device device, String font, String text, int flags) {
+            this.device = new WeakReference<Device>(device);
+            this.deviceHash = System.identityHashCode(device);
+            this.font = font;
+            this.text = text;
+            this.flags = flags;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null) return false;
+            if (getClass() != obj.getClass()) return false;
+            Key other = (Key) obj;
+            return this.device.get() == other.device.get() && this.flags == other.flags && this.font.equals(other.font) && this.text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + this.deviceHash;
+            result = prime * result + this.font.hashCode();
+            result = prime * result + this.text.hashCode();
+            result = prime * result + this.flags;
+            return result;
+        }
+    }
+
+    /**
+     * Default maximum number of extents.
+     */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    /**
+     * The shared instance.
+     */
+    private static final TextExtentCache DEFAULT = new TextExtentCache();
+
+    /**
+     * Flags value used for {@link GC#stringExtent(String)}.
+     */
+    private static final int STRING_EXTENT = -1;
+
+    /**
+     * Returns the cache shared by the prints.
+     * 
+     * @return the shared cache
+     */
+    public static TextExtentCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * The cached extents in access order.
+     */
+    private LinkedHashMap<Key, Point> entries = new LinkedHashMap<Key, Point>(256, 0.75f, true);
+
+    /**
+     * Number of extents found in the cache.
+     */
+    private long hitCount;
+
+    /**
+     * Maximum number of extents.
+     */
+    private int maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * Number of extents measured.
+     */
+    private long missCount;
+
+    /**
+     * Remove all the extents.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Remove the least recently used extents until the cache fit its maximum size.
+     */
+    private void evict() {
+        Iterator<Key> iter = this.entries.keySet().iterator();
+        while (this.entries.size() > this.maxSize && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+        }
+    }
+
+    /**
+     * Returns the extent from the cache or measure it.
+     * 
+     * @param gc
+     *            the graphic context
+     * @param fontData
+     *            the font data
+     * @param text
+     *            the string
+     * @param flags
+     *            the flags given to {@link GC#textExtent(String, int)} or {@link #STRING_EXTENT}
+     * @return a copy of the extent
+     */
+    private Point extent(GC gc, FontData fontData, String text, int flags) {
+        if (gc == null || fontData == null || text == null) {
+            throw new NullPointerException();
+        }
+        Device device = gc.getDevice();
+        Key key = new Key(device, fontData.toString(), text, flags);
+        Point extent;
+        synchronized (this) {
+            extent = this.entries.get(key);
+            if (extent != null) {
+                this.hitCount++;
+                return new Point(extent.x, extent.y);
+            }
+            this.missCount++;
+        }
+
+        // Measure without holding the lock.
+        DeviceResourcePool pool = DeviceResourcePool.get(device);
+        Font font = pool.getFont(fontData);
+        Font oldFont = gc.getFont();
+        try {
+            gc.setFont(font);
+            extent = flags == STRING_EXTENT ? gc.stringExtent(text) : gc.textExtent(text, flags);
+        } finally {
+            gc.setFont(oldFont);
+            pool.release(font);
+        }
+
+        synchronized (this) {
+            this.entries.put(key, extent);
+            evict();
+        }
+        return new Point(extent.x, extent.y);
+    }
+
+    /**
+     * Returns the number of extents found in the cache.
+     * 
+     * @return the number of hits
+     */
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * Returns the ratio of extents found in the cache.
+     * 
+     * @return the hit rate between 0 and 1
+     */
+    public synchronized float getHitRate() {
+        long total = this.hitCount + this.missCount;
+        return total == 0 ? 0 : this.hitCount / (float) total;
+    }
+
+    /**
+     * Returns the maximum number of extents.
+     * 
+     * @return the maximum size
+     */
+    public synchronized int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Returns the number of extents measured.
+     * 
+     * @return the number of misses
+     */
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * Remove the extents measured on the given device. The extents of the devices garbage collected are also removed.
+     * 
+     * @param device
+     *            the device
+     */
+    public synchronized void remove(Device device) {
+        Iterator<Key> iter = this.entries.keySet().iterator();
+        while (iter.hasNext()) {
+            Device d = iter.next().device.get();
+            if (d == device || d == null) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Reset the hit and miss counts.
+     */
+    public synchronized void resetStatistics() {
+        this.hitCount = 0;
+        this.missCount = 0;
+    }
+
+    /**
+     * Sets the maximum number of extents. Extents are removed if required.
+     * 
+     * @param maxSize
+     *            the maximum size
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    /**
+     * Returns the number of extents cached.
+     * 
+     * @return the number of extents
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the extent of the given string as {@link GC#stringExtent(String)}: tabs and line delimiters are not
+     * processed.
+     * 
+     * @param gc
+     *            the graphic context
+     * @param fontData
+     *            the font data
+     * @param text
+     *            the string
+     * @return the extent in pixels
+     */
+    public Point stringExtent(GC gc, FontData fontData, String text) {
+        return extent(gc, fontData, text, STRING_EXTENT);
+    }
+
+    /**
+     * Returns the extent of the given string as {@link GC#textExtent(String)}: tabs and line delimiters are expanded.
+     * 
+     * @param gc
+     *            the graphic context
+     * @param fontData
+     *            the font data
+     * @param text
+     *            the string
+     * @return the extent in pixels
+     */
+    public Point textExtent(GC gc, FontData fontData, String text) {
+        return extent(gc, fontData, text, SWT.DRAW_DELIMITER | SWT.DRAW_TAB);
+    }
+
+    /**
+     * Returns the extent of the given string as {@link GC#textExtent(String, int)}.
+     * 
+     * @param gc
+     *            the graphic context
+     * @param fontData
+     *            the font data
+     * @param text
+     *            the string
+     * @param flags
+     *            the flags, see {@link GC#textExtent(String, int)}
+     * @return the extent in pixels
+     */
+    public Point textExtent(GC gc, FontData fontData, String text, int flags) {
+        if (flags < 0) {
+            throw new IllegalArgumentException();
+        }
+        return extent(gc, fontData, text, flags);
+    }
+
+}
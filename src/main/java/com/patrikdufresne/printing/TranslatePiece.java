@@ -0,0 +1,69 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import org.eclipse.nebula.paperclips.core.PrintPiece;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Point;
+
+/**
+ * A print piece painting a single child piece at a fixed offset. Lightweight replacement of a CompositePiece with a
+ * single entry, used by the wrapper iterators.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+class TranslatePiece implements PrintPiece {
+    private final PrintPiece target;
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+
+    /**
+     * Create a new piece.
+     * 
+     * @param target
+     *            the child piece
+     * @param x
+     *            the horizontal offset of the child
+     * @param y
+     *            the vertical offset of the child
+     * @param width
+     *            the width of this piece
+     * @param height
+     *            the height of this piece
+     */
+    TranslatePiece(PrintPiece target, int x, int y, int width, int height) {
+        this.target = target;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    public void dispose() {
+        target.dispose();
+    }
+
+    public Point getSize() {
+        return new Point(width, height);
+    }
+
+    public void paint(GC gc, int x, int y) {
+        target.paint(gc, x + this.x, y + this.y);
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.eclipse.nebula.paperclips.core.grid.GridPrint;
+import org.eclipse.nebula.paperclips.core.text.TextPrint;
+import org.eclipse.swt.graphics.RGB;
+import org.junit.Test;
+
+/**
+ * Test the precedence of the colors of {@link BackgroundProvider}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class BackgroundProviderTest {
+
+    private static final RGB CELL = new RGB(255, 0, 0);
+
+    private static final RGB COLUMN = new RGB(0, 255, 0);
+
+    private static final RGB EVEN = new RGB(255, 255, 255);
+
+    private static final RGB ODD = new RGB(200, 200, 200);
+
+    @Test
+    public void testCellColspan() {
+        GridPrint grid = new GridPrint("d, d, d"); //$NON-NLS-1$
+        TextPrint wide = new TextPrint("wide"); //$NON-NLS-1$
+        TextPrint last = new TextPrint("last"); //$NON-NLS-1$
+        grid.add(wide, 2);
+        grid.add(last);
+        BackgroundProvider provider = new BackgroundProvider(grid);
+        provider.setBackground(last, CELL);
+        // The cells are indexed by starting column.
+        assertNull(provider.getCellBackground(0, 0, 2));
+        assertSame(CELL, provider.getCellBackground(0, 2, 1));
+        provider.setBackground(wide, COLUMN);
+        assertSame(COLUMN, provider.getCellBackground(0, 0, 2));
+    }
+
+    @Test
+    public void testCellOverColumnOverStripes() {
+        GridPrint grid = new GridPrint("d, d"); //$NON-NLS-1$
+        TextPrint cell = new TextPrint("cell"); //$NON-NLS-1$
+        grid.add(cell);
+        grid.add(new TextPrint("other")); //$NON-NLS-1$
+        BackgroundProvider provider = new BackgroundProvider(grid);
+        provider.setRowStripes(EVEN, ODD);
+        assertSame(EVEN, provider.getCellBackground(0, 0, 1));
+        provider.setColumnBackground(0, COLUMN);
+        assertSame(COLUMN, provider.getCellBackground(0, 0, 1));
+        assertSame(EVEN, provider.getCellBackground(0, 1, 1));
+        provider.setBackground(cell, CELL);
+        assertSame(CELL, provider.getCellBackground(0, 0, 1));
+        provider.setBackground(cell, null);
+        assertSame(COLUMN, provider.getCellBackground(0, 0, 1));
+        provider.setColumnBackground(0, null);
+        assertSame(EVEN, provider.getCellBackground(0, 0, 1));
+    }
+
+    @Test
+    public void testInvalidate() {
+        GridPrint grid = new GridPrint("d"); //$NON-NLS-1$
+        grid.add(new TextPrint("first")); //$NON-NLS-1$
+        TextPrint added = new TextPrint("added"); //$NON-NLS-1$
+        BackgroundProvider provider = new BackgroundProvider(grid);
+        provider.setBackground(added, CELL);
+        assertNull(provider.getCellBackground(0, 0, 1));
+        // The cell colors are indexed once, the new row is found after invalidate.
+        grid.add(added);
+        provider.invalidate();
+        assertSame(CELL, provider.getCellBackground(1, 0, 1));
+    }
+
+    @Test
+    public void testNoColor() {
+        BackgroundProvider provider = new BackgroundProvider(new GridPrint("d")); //$NON-NLS-1$
+        assertNull(provider.getCellBackground(0, 0, 1));
+        assertNull(provider.getCellBackground(5, 3, 1));
+    }
+
+    @Test
+    public void testRowStripes() {
+        BackgroundProvider provider = new BackgroundProvider(new GridPrint("d")); //$NON-NLS-1$
+        provider.setRowStripes(EVEN, null, ODD);
+        assertSame(EVEN, provider.getCellBackground(0, 0, 1));
+        assertNull(provider.getCellBackground(1, 0, 1));
+        assertSame(ODD, provider.getCellBackground(2, 0, 1));
+        assertSame(EVEN, provider.getCellBackground(3, 0, 1));
+        provider.setRowStripes();
+        assertNull(provider.getCellBackground(0, 0, 1));
+    }
+
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.nebula.paperclips.core.Print;
+import org.junit.Test;
+
+/**
+ * Test the sampling and the width computation of {@link ColumnWidthSampler}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class ColumnWidthSamplerTest {
+
+    /**
+     * Create a sampler of integer rows.
+     * 
+     * @param headSize
+     *            the number of first rows
+     * @param reservoirSize
+     *            the number of random rows
+     * @return the sampler
+     */
+    private static ColumnWidthSampler<Integer> createSampler(int headSize, int reservoirSize) {
+        ColumnWidthSampler<Integer> sampler = new ColumnWidthSampler<Integer>(new IRowRenderer<Integer>() {
+            public Print[] createCells(Integer row) {
+                return new Print[0];
+            }
+        });
+        sampler.setHeadSize(headSize);
+        sampler.setReservoirSize(reservoirSize);
+        return sampler;
+    }
+
+    /**
+     * Create a source of the rows 0 to count - 1.
+     * 
+     * @param count
+     *            the number of rows
+     * @return the source
+     */
+    private static IRowSource<Integer> createSource(final int count) {
+        return new IRowSource<Integer>() {
+            public Iterator<Integer> open() {
+                List<Integer> rows = new ArrayList<Integer>(count);
+                for (int i = 0; i < count; i++) {
+                    rows.add(Integer.valueOf(i));
+                }
+                return rows.iterator();
+            }
+        };
+    }
+
+    @Test
+    public void testPercentile() {
+        List<Integer> widths = Arrays.asList(Integer.valueOf(50), Integer.valueOf(10), Integer.valueOf(40), Integer.valueOf(20), Integer.valueOf(30));
+        assertEquals(10, ColumnWidthSampler.percentile(widths, 1));
+        assertEquals(30, ColumnWidthSampler.percentile(widths, 50));
+        assertEquals(40, ColumnWidthSampler.percentile(widths, 80));
+        assertEquals(50, ColumnWidthSampler.percentile(widths, 81));
+        assertEquals(50, ColumnWidthSampler.percentile(widths, 100));
+    }
+
+    @Test
+    public void testPercentileEmpty() {
+        assertEquals(0, ColumnWidthSampler.percentile(new ArrayList<Integer>(), 95));
+    }
+
+    @Test
+    public void testSampleClosesRows() {
+        final boolean[] closed = new boolean[1];
+        IRowSource<Integer> source = new IRowSource<Integer>() {
+            public Iterator<Integer> open() {
+                class Rows implements Iterator<Integer>, Closeable {
+                    int count;
+
+                    public void close() {
+                        closed[0] = true;
+                    }
+
+                    public boolean hasNext() {
+                        return this.count < 10;
+                    }
+
+                    public Integer next() {
+                        return Integer.valueOf(this.count++);
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                }
+                return new Rows();
+            }
+        };
+        assertEquals(10, createSampler(5, 5).sample(source).size());
+        assertTrue(closed[0]);
+    }
+
+    @Test
+    public void testSampleDeterministic() {
+        ColumnWidthSampler<Integer> sampler = createSampler(5, 5);
+        IRowSource<Integer> source = createSource(1000);
+        assertEquals(sampler.sample(source), sampler.sample(source));
+    }
+
+    @Test
+    public void testSampleHeadAndReservoir() {
+        List<Integer> sample = createSampler(5, 10).sample(createSource(1000));
+        assertEquals(15, sample.size());
+        assertEquals(Arrays.asList(Integer.valueOf(0), Integer.valueOf(1), Integer.valueOf(2), Integer.valueOf(3), Integer.valueOf(4)), sample.subList(0, 5));
+        // The reservoir is made of distinct rows after the head.
+        assertEquals(10, new HashSet<Integer>(sample.subList(5, 15)).size());
+        for (Integer row : sample.subList(5, 15)) {
+            assertTrue(row.intValue() >= 5 && row.intValue() < 1000);
+        }
+    }
+
+    @Test
+    public void testSampleSmallSource() {
+        List<Integer> sample = createSampler(5, 10).sample(createSource(8));
+        assertEquals(Arrays.asList(Integer.valueOf(0), Integer.valueOf(1), Integer.valueOf(2), Integer.valueOf(3), Integer.valueOf(4), Integer.valueOf(5),
+                Integer.valueOf(6), Integer.valueOf(7)), sample);
+    }
+
+    @Test
+    public void testSampleWithoutReservoir() {
+        assertEquals(3, createSampler(3, 0).sample(createSource(100)).size());
+    }
+
+    @Test
+    public void testShrink() {
+        int[] widths = { 100, 200, 100 };
+        ColumnWidthSampler.shrink(widths, new int[] { 50, 50, 100 }, 10, 270);
+        // 150 points removed proportionally to the width above the minimum (50 and 150), rounded up: 38 and 112.
+        assertArrayEquals(new int[] { 62, 88, 100 }, widths);
+    }
+
+    @Test
+    public void testShrinkFits() {
+        int[] widths = { 100, 200 };
+        ColumnWidthSampler.shrink(widths, new int[] { 10, 10 }, 10, 310);
+        assertArrayEquals(new int[] { 100, 200 }, widths);
+    }
+
+    @Test
+    public void testShrinkToMinimum() {
+        int[] widths = { 100, 200 };
+        ColumnWidthSampler.shrink(widths, new int[] { 80, 150 }, 10, 100);
+        assertArrayEquals(new int[] { 80, 150 }, widths);
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.patrikdufresne.printing.PrintMetricsHistogram.Histogram;
+
+/**
+ * Test the buckets and the percentiles of {@link PrintMetricsHistogram}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class PrintMetricsHistogramTest {
+
+    private static final String JOB = "job"; //$NON-NLS-1$
+
+    private static final long MILLI = 1000000L;
+
+    @Test
+    public void testBucketOf() {
+        assertEquals(0, PrintMetricsHistogram.bucketOf(0));
+        assertEquals(0, PrintMetricsHistogram.bucketOf(MILLI - 1));
+        assertEquals(1, PrintMetricsHistogram.bucketOf(MILLI));
+        assertEquals(1, PrintMetricsHistogram.bucketOf(2 * MILLI - 1));
+        assertEquals(2, PrintMetricsHistogram.bucketOf(2 * MILLI));
+        assertEquals(2, PrintMetricsHistogram.bucketOf(3 * MILLI));
+        assertEquals(3, PrintMetricsHistogram.bucketOf(4 * MILLI));
+        assertEquals(16, PrintMetricsHistogram.bucketOf(65535 * MILLI));
+        assertEquals(PrintMetricsHistogram.BUCKET_COUNT - 1, PrintMetricsHistogram.bucketOf(65536 * MILLI));
+        assertEquals(PrintMetricsHistogram.BUCKET_COUNT - 1, PrintMetricsHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testCountRecorded() {
+        PrintMetricsHistogram metrics = new PrintMetricsHistogram();
+        metrics.countRecorded(JOB, IPrintMetricsListener.COUNT_PAGES, 3);
+        metrics.countRecorded(JOB, IPrintMetricsListener.COUNT_PAGES, 4);
+        assertEquals(7, metrics.getCount(JOB, IPrintMetricsListener.COUNT_PAGES));
+        assertEquals(0, metrics.getCount("other", IPrintMetricsListener.COUNT_PAGES)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testPercentile() {
+        PrintMetricsHistogram metrics = new PrintMetricsHistogram();
+        for (int i = 0; i < 9; i++) {
+            metrics.phaseCompleted(JOB, IPrintMetricsListener.PHASE_PAGINATION, MILLI / 2);
+        }
+        metrics.phaseCompleted(JOB, IPrintMetricsListener.PHASE_PAGINATION, 10 * MILLI);
+        Histogram histogram = metrics.getHistogram(JOB, IPrintMetricsListener.PHASE_PAGINATION);
+        assertEquals(10, histogram.getCount());
+        // Upper limit of the bucket, bounded by the longest time.
+        assertEquals(MILLI, histogram.getPercentile(50));
+        assertEquals(MILLI, histogram.getPercentile(90));
+        assertEquals(10 * MILLI, histogram.getPercentile(95));
+        assertEquals(10 * MILLI, histogram.getPercentile(100));
+        assertEquals(MILLI / 2, histogram.getMin());
+        assertEquals(10 * MILLI, histogram.getMax());
+    }
+
+    @Test
+    public void testPercentileEmpty() {
+        PrintMetricsHistogram metrics = new PrintMetricsHistogram();
+        assertNull(metrics.getHistogram(JOB, IPrintMetricsListener.PHASE_PAGINATION));
+        assertEquals(0, new Histogram().getPercentile(95));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPercentileInvalid() {
+        new Histogram().getPercentile(101);
+    }
+
+    @Test
+    public void testPercentileLastBucket() {
+        PrintMetricsHistogram metrics = new PrintMetricsHistogram();
+        metrics.phaseCompleted(JOB, IPrintMetricsListener.PHASE_PAGINATION, 100000 * MILLI);
+        assertEquals(100000 * MILLI, metrics.getHistogram(JOB, IPrintMetricsListener.PHASE_PAGINATION).getPercentile(50));
+    }
+
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright(C) 2013 Patrik Dufresne Service Logiciel <info@patrikdufresne.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.patrikdufresne.printing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+/**
+ * Test the rows kept by the {@link RowBuffer} of a {@link StreamingTablePrint}.
+ * 
+ * @author Patrik Dufresne
+ * 
+ */
+public class RowBufferTest {
+
+    /**
+     * A cursor at a fixed position.
+     */
+    private static class TestCursor implements RowBuffer.Cursor {
+        long position;
+
+        TestCursor(long position) {
+            this.position = position;
+        }
+
+        public long getPosition() {
+            return this.position;
+        }
+    }
+
+    /**
+     * An endless source counting the rows read.
+     */
+    private static class CountingSource implements Iterator<Integer> {
+        int count;
+
+        public boolean hasNext() {
+            return true;
+        }
+
+        public Integer next() {
+            return Integer.valueOf(this.count++);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * A source of a few rows counting the calls to close.
+     */
+    private static class ClosingSource extends CountingSource implements Closeable {
+        int closeCount;
+        final int size;
+
+        ClosingSource(int size) {
+            this.size = size;
+        }
+
+        public void close() {
+            this.closeCount++;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.count < this.size;
+        }
+    }
+
+    @Test
+    public void testCloseWhenExhausted() {
+        ClosingSource source = new ClosingSource(3);
+        RowBuffer<Integer> buffer = new RowBuffer<Integer>(source);
+        assertTrue(buffer.has(2));
+        assertEquals(0, source.closeCount);
+        assertFalse(buffer.has(3));
+        assertEquals(1, source.closeCount);
+        // The buffered rows are still available, the source is closed once.
+        assertEquals(Integer.valueOf(2), buffer.get(2));
+        assertFalse(buffer.has(5));
+        buffer.close();
+        assertEquals(1, source.closeCount);
+    }
+
+    @Test
+    public void testTrimBeyondBuffer() {
+        CountingSource source = new CountingSource();
+        RowBuffer<Integer> buffer = new RowBuffer<Integer>(source);
+        TestCursor cursor = new TestCursor(20);
+        buffer.register(cursor);
+        assertTrue(buffer.has(4));
+        buffer.trim();
+        // Only the buffered rows are discarded, the next row is still read from the source.
+        assertFalse(buffer.has(4));
+        assertTrue(buffer.has(5));
+        assertEquals(Integer.valueOf(5), buffer.get(5));
+        assertEquals(20, cursor.getPosition());
+    }
+
+    @Test
+    public void testTrimKeepsSlowestCursor() {
+        CountingSource source = new CountingSource();
+        RowBuffer<Integer> buffer = new RowBuffer<Integer>(source);
+        TestCursor slow = new TestCursor(3);
+        TestCursor fast = new TestCursor(5);
+        buffer.register(slow);
+        buffer.register(fast);
+        assertTrue(buffer.has(9));
+        assertEquals(10, source.count);
+        buffer.trim();
+        assertFalse(buffer.has(2));
+        assertTrue(buffer.has(3));
+        assertEquals(Integer.valueOf(3), buffer.get(3));
+        assertEquals(Integer.valueOf(9), buffer.get(9));
+        // The rows kept are not read again.
+        assertEquals(10, source.count);
+
+        slow.position = 7;
+        buffer.trim();
+        assertFalse(buffer.has(4));
+        assertTrue(buffer.has(5));
+        assertEquals(10, source.count);
+    }
+
+    @Test
+    public void testTrimWithoutCursor() {
+        CountingSource source = new CountingSource();
+        RowBuffer<Integer> buffer = new RowBuffer<Integer>(source);
+        assertTrue(buffer.has(9));
+        buffer.trim();
+        assertFalse(buffer.has(9));
+        assertTrue(buffer.has(10));
+        assertEquals(Integer.valueOf(10), buffer.get(10));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetTrimmed() {
+        RowBuffer<Integer> buffer = new RowBuffer<Integer>(new CountingSource());
+        buffer.register(new TestCursor(2));
+        buffer.has(5);
+        buffer.trim();
+        buffer.get(1);
+    }
+
+}